@@ -0,0 +1,133 @@
+import java.awt.BorderLayout;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table of queued solver jobs with live status and timing. Double-click a
+ * solved row to open it in the solution viewer. The window owns its scheduler
+ * and shuts it down once every job has finished or the window is closed.
+ */
+final class BatchWindow {
+
+    private static final String[] COLUMNS = {
+            "Problem", "Method", "Heuristic", "Status", "Wall (ms)", "Solver (ms)", "Visited", "Steps", "Cost" };
+
+    private final SolveScheduler scheduler;
+    private final List<SolveScheduler.Job> jobs = new ArrayList<>();
+    private final JobTableModel model = new JobTableModel();
+    private final JLabel summaryLabel = new JLabel();
+    private final JFrame frame;
+
+    BatchWindow(SolveScheduler scheduler, BiConsumer<SolverStream.Result, File> openViewer) {
+        this.scheduler = scheduler;
+
+        frame = new JFrame("Batch Solve");
+        frame.setSize(800, 400);
+        frame.setLayout(new BorderLayout());
+        frame.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                jobs.forEach(scheduler::cancel);
+                scheduler.shutdown();
+            }
+        });
+
+        JTable table = new JTable(model);
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = table.rowAtPoint(e.getPoint());
+                if (e.getClickCount() == 2 && row >= 0) {
+                    SolveScheduler.Job job = jobs.get(table.convertRowIndexToModel(row));
+                    if (job.status == SolveScheduler.Status.SOLVED)
+                        openViewer.accept(job.result, job.folder);
+                }
+            }
+        });
+        table.setAutoCreateRowSorter(true);
+        frame.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JButton cancelButton = new JButton("Cancel All");
+        cancelButton.addActionListener(_ -> jobs.forEach(scheduler::cancel));
+
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        bottomPanel.add(summaryLabel, BorderLayout.CENTER);
+        bottomPanel.add(cancelButton, BorderLayout.EAST);
+        frame.add(bottomPanel, BorderLayout.SOUTH);
+    }
+
+    void show() {
+        frame.setVisible(true);
+    }
+
+    void submit(File folder, String method, String heuristic, String cost) {
+        jobs.add(scheduler.submit(folder, method, heuristic, cost, this::jobUpdated));
+        model.fireTableRowsInserted(jobs.size() - 1, jobs.size() - 1);
+        updateSummary();
+    }
+
+    private void jobUpdated(SolveScheduler.Update update) {
+        int row = jobs.indexOf(update.job());
+        if (row >= 0)
+            model.fireTableRowsUpdated(row, row);
+        updateSummary();
+        if (jobs.stream().allMatch(SolveScheduler.Job::isFinished))
+            scheduler.shutdown(); // the daemons are not needed to view results
+    }
+
+    private void updateSummary() {
+        long finished = jobs.stream().filter(SolveScheduler.Job::isFinished).count();
+        long solved = jobs.stream().filter(job -> job.status == SolveScheduler.Status.SOLVED).count();
+        summaryLabel.setText(" " + finished + " / " + jobs.size() + " finished, " + solved + " solved");
+    }
+
+    private final class JobTableModel extends AbstractTableModel {
+        @Override
+        public int getRowCount() {
+            return jobs.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column >= 4 ? Long.class : String.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            SolveScheduler.Job job = jobs.get(row);
+            SolverStream.Result result = job.result;
+            SolverStream.Progress progress = job.progress;
+            return switch (column) {
+                case 0 -> job.folder.getName();
+                case 1 -> job.cost.equals("MOVES") ? job.method : job.method + " / " + job.cost;
+                case 2 -> job.heuristic == null ? "-" : job.heuristic;
+                case 3 -> job.status == SolveScheduler.Status.FAILED ? "FAILED: " + job.error : job.status.toString();
+                case 4 -> job.wallMs;
+                case 5 -> result != null ? Long.valueOf(result.runtime) : progress != null ? Long.valueOf(progress.elapsedMs()) : null;
+                case 6 -> result != null ? Long.valueOf(result.visited) : progress != null ? Long.valueOf(progress.expanded()) : null;
+                case 7 -> result != null && result.solved ? Long.valueOf(result.numSteps) : null;
+                case 8 -> result != null && result.solved ? Long.valueOf(result.cost) : null;
+                default -> null;
+            };
+        }
+    }
+}
@@ -0,0 +1,190 @@
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.function.BiConsumer;
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+/**
+ * Paints a whole board with Graphics2D. Board changes repaint only the cells
+ * that differ, and a single move can be animated as a smooth slide.
+ */
+final class BoardView extends JComponent {
+
+    private static final int FRAME_MS = 16;
+
+    private final int cellSize;
+    private char[][] shown = new char[0][0];
+    private boolean outerRing; // editor: draw the exit ring around the board
+
+    // running slide animation
+    private Timer timer;
+    private char movingPiece;
+    private int moveRows, moveCols; // full displacement in cells
+    private double progress;
+    private Rectangle sweep;
+
+    BoardView(int cellSize) {
+        this.cellSize = cellSize;
+        setOpaque(true);
+    }
+
+    void setOuterRing(boolean outerRing) {
+        this.outerRing = outerRing;
+        repaint();
+    }
+
+    /** Calls {@code listener(row, col)} when a cell is clicked. */
+    void setCellListener(BiConsumer<Integer, Integer> listener) {
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = e.getY() / cellSize, col = e.getX() / cellSize;
+                if (row < shown.length && col < shown[row].length)
+                    listener.accept(row, col);
+            }
+        });
+    }
+
+    /** Replaces the board, possibly with new dimensions. */
+    void setBoard(char[][] board) {
+        stopAnimation();
+        shown = new char[board.length][];
+        for (int i = 0; i < board.length; i++)
+            shown[i] = board[i].clone();
+        revalidate();
+        repaint();
+    }
+
+    /** Shows a board of the same size, repainting only the cells that changed. */
+    void showBoard(char[][] board) {
+        stopAnimation();
+        for (int i = 0; i < shown.length; i++) {
+            for (int j = 0; j < shown[i].length; j++) {
+                if (shown[i][j] != board[i][j]) {
+                    shown[i][j] = board[i][j];
+                    repaint(j * cellSize, i * cellSize, cellSize + 1, cellSize + 1);
+                }
+            }
+        }
+    }
+
+    void setCell(int row, int col, char c) {
+        shown[row][col] = c;
+        repaint(col * cellSize, row * cellSize, cellSize + 1, cellSize + 1);
+    }
+
+    /**
+     * Slides {@code move.piece()} from its current cells over {@code durationMs},
+     * then runs {@code onDone}. The shown board itself is left unchanged; the
+     * caller is expected to {@link #showBoard} the resulting step.
+     */
+    void animate(SolverStream.Move move, int durationMs, Runnable onDone) {
+        stopAnimation();
+
+        Rectangle from = null;
+        for (int i = 0; i < shown.length; i++) {
+            for (int j = 0; j < shown[i].length; j++) {
+                if (shown[i][j] == move.piece()) {
+                    Rectangle cell = new Rectangle(j * cellSize, i * cellSize, cellSize + 1, cellSize + 1);
+                    from = from == null ? cell : from.union(cell);
+                }
+            }
+        }
+        if (from == null) {
+            onDone.run();
+            return;
+        }
+
+        movingPiece = move.piece();
+        moveRows = move.direction() == 'U' ? -move.distance() : move.direction() == 'D' ? move.distance() : 0;
+        moveCols = move.direction() == 'L' ? -move.distance() : move.direction() == 'R' ? move.distance() : 0;
+        progress = 0;
+        Rectangle to = new Rectangle(from);
+        to.translate(moveCols * cellSize, moveRows * cellSize);
+        sweep = from.union(to);
+
+        long start = System.nanoTime();
+        timer = new Timer(FRAME_MS, _ -> {
+            progress = Math.min(1.0, (System.nanoTime() - start) / 1e6 / Math.max(1, durationMs));
+            repaint(sweep);
+            if (progress >= 1.0) {
+                stopAnimation();
+                onDone.run();
+            }
+        });
+        timer.start();
+    }
+
+    void stopAnimation() {
+        if (timer != null) {
+            timer.stop();
+            timer = null;
+            repaint(sweep);
+        }
+        movingPiece = 0;
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        int width = shown.length == 0 ? 0 : shown[0].length;
+        return new Dimension(width * cellSize + 1, shown.length * cellSize + 1);
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        Graphics2D g = (Graphics2D) graphics.create();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setColor(getBackground());
+        Rectangle clip = g.getClipBounds();
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        int h = shown.length;
+        int firstRow = Math.max(0, clip.y / cellSize), lastRow = Math.min(h - 1, (clip.y + clip.height) / cellSize);
+        for (int i = firstRow; i <= lastRow; i++) {
+            int w = shown[i].length;
+            int firstCol = Math.max(0, clip.x / cellSize), lastCol = Math.min(w - 1, (clip.x + clip.width) / cellSize);
+            for (int j = firstCol; j <= lastCol; j++) {
+                char c = shown[i][j] == movingPiece && movingPiece != 0 ? '.' : shown[i][j];
+                paintCell(g, c, j * cellSize, i * cellSize, cellSize, emptyColor(i, j));
+            }
+        }
+
+        if (movingPiece != 0) {
+            int dx = (int) Math.round(moveCols * cellSize * progress);
+            int dy = (int) Math.round(moveRows * cellSize * progress);
+            for (int i = 0; i < h; i++) {
+                for (int j = 0; j < shown[i].length; j++) {
+                    if (shown[i][j] == movingPiece)
+                        paintCell(g, movingPiece, j * cellSize + dx, i * cellSize + dy, cellSize, Color.WHITE);
+                }
+            }
+        }
+        g.dispose();
+    }
+
+    private Color emptyColor(int row, int col) {
+        if (!outerRing)
+            return Color.WHITE;
+        boolean isOuter = row == 0 || col == 0 || row == shown.length - 1 || col == shown[row].length - 1;
+        return isOuter ? Color.DARK_GRAY : Color.LIGHT_GRAY;
+    }
+
+    /** Draws one board cell; shared by the component and GUI.renderBoard. */
+    static void paintCell(Graphics2D g, char c, int x, int y, int size, Color empty) {
+        boolean isEmpty = c == '.' || c == ' ' || c == '\0';
+        g.setColor(isEmpty ? empty : GUI.getColorForChar(c));
+        g.fillRect(x, y, size, size);
+        g.setColor(Color.BLACK);
+        g.drawRect(x, y, size, size);
+
+        if (!isEmpty) {
+            g.drawString(Character.toString(c), x + size * 3 / 8, y + size * 5 / 8);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped states.bin written by {@code main.exe <folder> --enumerate}:
+ * every state reachable from a board with its exact distance to the goal. See
+ * src/class/Algo/StateSpace/DistanceTable.hpp for the layout; keys are packed
+ * here exactly as Board::Pack does, so a shown board can be looked up directly.
+ */
+final class DistanceTable {
+
+    static final int UNSOLVABLE = 255;
+    private static final String MAGIC = "RHSTATES";
+
+    private final MappedByteBuffer data;
+    private final int height, width, keyBits, keyWords;
+    private final long count;
+    private final int keysAt, distancesAt;
+    private final int[] pieceIndex = new int[Character.MAX_VALUE + 1]; // id -> piece + 1, 0 if none
+    private final boolean[] vertical;
+
+    private DistanceTable(MappedByteBuffer data) throws IOException {
+        this.data = data;
+        byte[] magic = new byte[MAGIC.length()];
+        data.get(0, magic);
+        if (!new String(magic, StandardCharsets.US_ASCII).equals(MAGIC))
+            throw new IOException("Not a states.bin file.");
+
+        height = data.getInt(8);
+        width = data.getInt(12);
+        int pieces = data.getInt(16);
+        keyBits = data.getInt(20);
+        keyWords = data.getInt(24);
+        count = data.getLong(32);
+        keysAt = (8 + 6 * 4 + 8 + pieces * 4 + 7) / 8 * 8;
+        distancesAt = (int) (keysAt + count * keyWords * 8);
+        if (keyWords < 1 || keyWords > 3 || distancesAt + count != data.capacity())
+            throw new IOException("Damaged states.bin file.");
+
+        vertical = new boolean[pieces];
+        for (int i = 0; i < pieces; i++) {
+            pieceIndex[data.get(40 + i * 4) & 0xFF] = i + 1;
+            vertical[i] = data.get(40 + i * 4 + 1) != 0;
+        }
+    }
+
+    static DistanceTable open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("states.bin is too large to map.");
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            return new DistanceTable(data);
+        }
+    }
+
+    /** Moves from {@code board} to the goal, {@link #UNSOLVABLE}, or -1 if the board is not in the table. */
+    int distance(char[][] board) {
+        if (board.length != height || board[0].length != width)
+            return -1;
+
+        // the first cell met of each piece is its top (vertical) or left (horizontal) end
+        long[] key = new long[keyWords];
+        boolean[] seen = new boolean[vertical.length];
+        int perWord = 64 / keyBits;
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                int piece = pieceIndex[board[i][j]] - 1;
+                if (piece < 0 || seen[piece])
+                    continue;
+                seen[piece] = true;
+                long offset = (vertical[piece] ? i : j) + 1;
+                key[piece / perWord] |= offset << ((piece % perWord) * keyBits);
+            }
+        }
+
+        long low = 0, high = count - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            int order = compare(middle, key);
+            if (order == 0)
+                return data.get((int) (distancesAt + middle)) & 0xFF;
+            if (order < 0)
+                low = middle + 1;
+            else
+                high = middle - 1;
+        }
+        return -1;
+    }
+
+    private int compare(long state, long[] key) {
+        int at = (int) (keysAt + state * keyWords * 8);
+        for (int w = 0; w < keyWords; w++) {
+            int order = Long.compareUnsigned(data.getLong(at + w * 8), key[w]);
+            if (order != 0)
+                return order;
+        }
+        return 0;
+    }
+}
@@ -3,12 +3,12 @@ import java.awt.Color;
 import java.awt.event.*;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import javax.imageio.ImageIO;
 import javax.swing.*;
 
@@ -16,14 +16,27 @@ public class GUI {
 
     private int height, width;
     private char[][] gridData;
-    private JPanel gridPanel;
+    private BoardView gridView;
     private Character currentChar = null;
 
+    private static final String[] METHODS = { "UCS", "A*", "GBFS", "IDA*", "BIDI", "ARA*" };
+    private static final String[] COST_MODELS = { "MOVES", "CELLS" };
+    private final SolveScheduler scheduler = new SolveScheduler(Runtime.getRuntime().availableProcessors());
+    private final CompletableFuture<List<String>> heuristics = new CompletableFuture<>(); // listed off the EDT
+
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> new GUI().createAndShowGUI());
     }
 
     private void createAndShowGUI() {
+        scheduler.execute(() -> {
+            try {
+                heuristics.complete(SolverStream.heuristics());
+            } catch (Exception ex) {
+                heuristics.completeExceptionally(ex);
+            }
+        });
+
         JFrame frame = new JFrame("Rush Hour Puzzle Generator");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setSize(700, 700);
@@ -39,6 +52,10 @@ public class GUI {
         JButton putPieceButton = new JButton("Put Piece");
         JButton saveButton = new JButton("Save");
         JButton solveButton = new JButton("Solve");
+        JButton batchButton = new JButton("Batch");
+        JButton viewButton = new JButton("View");
+        JComboBox<String> costChoice = new JComboBox<>(COST_MODELS);
+        costChoice.setToolTipText("MOVES: one per slide of any distance. CELLS: one per cell travelled.");
 
         inputPanel.add(heightLabel);
         inputPanel.add(heightField);
@@ -47,10 +64,23 @@ public class GUI {
         inputPanel.add(renderButton);
         inputPanel.add(putPieceButton);
         inputPanel.add(saveButton);
+        inputPanel.add(new JLabel("Cost:"));
+        inputPanel.add(costChoice);
         inputPanel.add(solveButton);
-
-        gridPanel = new JPanel();
-        JScrollPane scrollPane = new JScrollPane(gridPanel);
+        inputPanel.add(batchButton);
+        inputPanel.add(viewButton);
+
+        gridView = new BoardView(40);
+        gridView.setOuterRing(true);
+        gridView.setCellListener((row, col) -> {
+            if (currentChar != null) {
+                gridData[row][col] = currentChar;
+                gridView.setCell(row, col, currentChar);
+            }
+        });
+        JPanel gridHolder = new JPanel();
+        gridHolder.add(gridView);
+        JScrollPane scrollPane = new JScrollPane(gridHolder);
         frame.add(inputPanel, BorderLayout.NORTH);
         frame.add(scrollPane, BorderLayout.CENTER);
 
@@ -65,39 +95,8 @@ public class GUI {
                 int fullWidth = width + 2;
 
                 gridData = new char[fullHeight][fullWidth];
-                gridPanel.removeAll();
-                gridPanel.setLayout(new GridLayout(fullHeight, fullWidth, 2, 2));
-
-                for (int row = 0; row < fullHeight; row++) {
-                    for (int col = 0; col < fullWidth; col++) {
-                        JPanel cell = new JPanel();
-                        boolean isOuter = (row == height + 1 || col == width + 1 || row == 0 || col == 0);
-                        cell.setBackground(isOuter ? Color.DARK_GRAY : Color.LIGHT_GRAY);
-                        cell.setBorder(BorderFactory.createLineBorder(Color.BLACK));
-
-                        int finalRow = row;
-                        int finalCol = col;
-
-                        cell.addMouseListener(new MouseAdapter() {
-                            @Override
-                            public void mouseClicked(MouseEvent e) {
-                                if (currentChar != null) {
-                                    gridData[finalRow][finalCol] = currentChar;
-                                    cell.setBackground(getColorForChar(currentChar));
-                                    cell.removeAll();
-                                    cell.add(new JLabel(currentChar.toString()));
-                                    cell.revalidate();
-                                    cell.repaint();
-                                }
-                            }
-                        });
-
-                        gridPanel.add(cell);
-                    }
-                }
+                gridView.setBoard(gridData);
                 putPieceButton.setVisible(true);
-                gridPanel.revalidate();
-                gridPanel.repaint();
 
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(frame, "Please enter valid positive integers for height and width.");
@@ -155,93 +154,15 @@ public class GUI {
                 // Create or overwrite directory
                 testcaseDir.mkdirs();
 
-                try (java.io.PrintWriter writer = new java.io.PrintWriter(problemFile)) {
-                    // 1. Write height and width
-                    writer.println(height + " " + width);
-
-                    String exitPosition = null;
-                    // 2. Count distinct characters
-                    java.util.Set<Character> pieces = new java.util.HashSet<>();
-                    for (int i = 0; i <= height + 1; i++) {
-                        for (int j = 0; j <= width + 1; j++) {
-                            char c = gridData[i][j];
-                            if (c == 'K') {
-                                if (i == 0)
-                                    exitPosition = "UP";
-                                if (j == 0)
-                                    exitPosition = "LEFT";
-                                if (j == width + 1)
-                                    exitPosition = "RIGHT";
-                                if (i == height + 1)
-                                    exitPosition = "DOWN";
-                            } else if (c != '\0' && c != 'P') {
-                                pieces.add(c);
-                            }
-                        }
-                    }
-                    writer.println(pieces.size());
-                    // 3. Write grid rows
-                    if (exitPosition == null)
-                        throw new Exception();
-                    if (exitPosition == "UP") {
-                        // print top-most layer
-                        for (int j = 1; j <= width; j++) {
-                            char c = gridData[0][j];
-                            writer.print((c == '\0' ? ' ' : c));
-                        }
-                        writer.println();
-                        for (int i = 1; i <= height; i++) {
-                            for (int j = 1; j <= width; j++) {
-                                char c = gridData[i][j];
-                                writer.print((c == '\0' ? '.' : c));
-                            }
-                            if (i < height)
-                                writer.println();
-                        }
-                    } else if (exitPosition == "DOWN") {
-                        for (int i = 1; i <= height; i++) {
-                            for (int j = 1; j <= width; j++) {
-                                char c = gridData[i][j];
-                                writer.print((c == '\0' ? '.' : c));
-                            }
-                            writer.println();
-                        }
-                        // print bottom-most layer
-                        for (int j = 1; j <= width; j++) {
-                            char c = gridData[height + 1][j];
-                            writer.print((c == '\0' ? ' ' : c));
-                        }
-                    } else if (exitPosition == "RIGHT") {
-                        // print all the way to the right
-                        for (int i = 1; i <= height; i++) {
-                            for (int j = 1; j <= width; j++) {
-                                char c = gridData[i][j];
-                                writer.print((c == '\0' ? '.' : c));
-                            }
-                            if (gridData[i][width + 1] == 'K')
-                                writer.print('K');
-                            if (i < height)
-                                writer.println();
-                        }
-                    } else {
-                        // print all the way to the left
-                        for (int i = 1; i <= height; i++) {
-                            for (int j = 0; j <= width; j++) {
-                                if (j > 0) {
-                                    char c = gridData[i][j];
-                                    writer.print((c == '\0' ? '.' : c));
-                                } else
-                                    writer.print((gridData[i][j] == 'K') ? "K" : ' ');
-                            }
-                            if (i < height)
-                                writer.println();
-                        }
-                    }
-
+                try {
+                    ProblemFile.write(problemFile, gridData, height, width);
                     JOptionPane.showMessageDialog(null, "Puzzle saved to " + problemFile.getAbsolutePath());
                     putPieceButton.setVisible(false);
                     solveButton.setVisible(true);
-                } catch (Exception ex) {
+                } catch (IllegalArgumentException ex) {
+                    JOptionPane.showMessageDialog(null, ex.getMessage(), "Cannot save this board", JOptionPane.WARNING_MESSAGE);
+                    return; // fix the board, then save again
+                } catch (java.io.IOException ex) {
                     JOptionPane.showMessageDialog(null, "Error saving file: " + ex.getMessage());
                 }
 
@@ -261,179 +182,439 @@ public class GUI {
                 return; // Cancelled
             }
 
-            File selectedFolder = chooser.getSelectedFile();
-
-            // 2. Prompt for solving method
-            String[] methods = { "UCS", "A*", "GBFS", "IDA*" };
-            String method = (String) JOptionPane.showInputDialog(
-                    null,
-                    "Choose solving method:",
-                    "Solve Puzzle",
-                    JOptionPane.PLAIN_MESSAGE,
-                    null,
-                    methods,
-                    methods[0]);
+            File problemFile = chooser.getSelectedFile();
 
+            // 2. Prompt for solving method and heuristic
+            String method = chooseMethod(METHODS);
             if (method == null)
                 return; // Cancelled
 
             String heuristic = null;
+            if (usesHeuristic(method)) {
+                heuristic = chooseHeuristic();
+                if (heuristic == null)
+                    return; // Cancelled
+            }
+
+            SolverClient.Budget budget = SolverClient.Budget.NONE;
+            if (method.equals("ARA*")) {
+                String timeout = JOptionPane.showInputDialog(frame, "Time budget in ms (0 = until proven optimal):", 0);
+                if (timeout == null)
+                    return; // Cancelled
+                try {
+                    budget = new SolverClient.Budget(Long.parseLong(timeout.trim()), 0);
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(frame, "Please enter a whole number of milliseconds.");
+                    return;
+                }
+            }
+
+            // 3. Run the solver on the scheduler, streaming its progress
+            JDialog progressDialog = new JDialog(frame, "Solving " + problemFile.getName(), false);
+            JLabel progressLabel = new JLabel("Waiting for a free solver slot...");
+            JButton cancelButton = new JButton(method.equals("ARA*") ? "Stop" : "Cancel"); // ARA* stops with its best
+            MetricsChart metricsChart = new MetricsChart(); // shown once the engine sends METRICS records
+            metricsChart.setVisible(false);
+            JLabel bestLabel = new JLabel();
+            JButton viewBestButton = new JButton("View");
+            JPanel bestPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0)); // ARA*: best solution so far
+            bestPanel.add(bestLabel);
+            bestPanel.add(viewBestButton);
+            bestPanel.setVisible(false);
+            JPanel progressPanel = new JPanel(new BorderLayout(10, 10));
+            progressPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+            progressPanel.add(bestPanel, BorderLayout.NORTH);
+            progressPanel.add(progressLabel, BorderLayout.CENTER);
+            progressPanel.add(cancelButton, BorderLayout.EAST);
+            progressPanel.add(metricsChart, BorderLayout.SOUTH);
+            progressDialog.add(progressPanel);
+            progressDialog.setSize(520, 90);
+            progressDialog.setLocationRelativeTo(frame);
+
+            String cost = (String) costChoice.getSelectedItem();
+            SolveScheduler.Job job = scheduler.submit(problemFile, method, heuristic, cost, budget, updated -> {
+                switch (updated.status()) {
+                    case QUEUED -> {
+                    }
+                    case RUNNING -> {
+                        SolverStream.Progress p = updated.progress();
+                        progressLabel.setText(p == null ? "Solving..."
+                                : "Expanded: " + p.expanded() +
+                                        "   Open: " + p.open() +
+                                        "   Bound: " + p.bound() +
+                                        "   Elapsed: " + p.elapsedMs() + " ms");
+                        if (updated.metrics() != null) {
+                            metricsChart.add(updated.metrics());
+                            if (!metricsChart.isVisible()) {
+                                metricsChart.setVisible(true);
+                                progressDialog.setSize(560, progressDialog.getHeight() + 250);
+                            }
+                        }
+                        SolverStream.Result best = updated.best();
+                        if (best != null) {
+                            bestLabel.setText("Best so far: " + (best.numSteps - 1) + " moves, cost " + best.cost +
+                                    ", " + boundText(best.bound) + " (" + best.runtime + " ms)");
+                            if (!bestPanel.isVisible()) {
+                                bestPanel.setVisible(true);
+                                progressDialog.setSize(Math.max(progressDialog.getWidth(), 620), progressDialog.getHeight() + 40);
+                            }
+                        }
+                    }
+                    case CANCELLED -> progressDialog.dispose();
+                    case FAILED -> {
+                        progressDialog.dispose();
+                        JOptionPane.showMessageDialog(null,
+                                "Failed to run solver or read output: " + updated.error());
+                    }
+                    case NO_SOLUTION -> {
+                        progressDialog.dispose();
+                        JOptionPane.showMessageDialog(null,
+                                "No solution found.\n" +
+                                        "Runtime: " + updated.result().runtime + " ms\n" +
+                                        "Visited Nodes: " + updated.result().visited);
+                    }
+                    case SOLVED -> {
+                        progressDialog.dispose();
+                        SolverStream.Result solution = updated.result();
+
+                        // 4. Show metadata popup
+                        JOptionPane.showMessageDialog(null,
+                                "Runtime: " + solution.runtime + " ms\n" +
+                                        "Visited Nodes: " + solution.visited + "\n" +
+                                        "Number of Steps: " + solution.numSteps + "\n" +
+                                        "Cost (" + cost + "): " + solution.cost +
+                                        (solution.bound > 0 ? "\nBound: " + boundText(solution.bound) : ""));
+
+                        // 5. Show solution viewer
+                        showSolutionViewer(solution, problemFile);
+                    }
+                }
+            });
+
+            cancelButton.addActionListener(_ -> scheduler.cancel(job));
+            viewBestButton.addActionListener(_ -> {
+                SolverStream.Result best = job.best;
+                if (best != null)
+                    showSolutionViewer(best, problemFile);
+            });
+            progressDialog.setVisible(true);
+        });
+
+        viewButton.addActionListener(_ -> {
+            // Open a saved solutions.txt (either format) in the viewer
+            JFileChooser chooser = new JFileChooser(new File("test"));
+            chooser.setDialogTitle("Select Solved Problem Folder");
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            chooser.setAcceptAllFileFilterUsed(false);
+
+            if (chooser.showOpenDialog(null) != JFileChooser.APPROVE_OPTION) {
+                return; // Cancelled
+            }
+
+            File problemFile = chooser.getSelectedFile();
+            scheduler.execute(() -> {
+                try {
+                    SolverStream.Result solution = SolutionFile.read(new File(problemFile, "solutions.txt"));
+                    SwingUtilities.invokeLater(() -> showSolutionViewer(solution, problemFile));
+                } catch (Exception ex) {
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(frame,
+                            "Cannot read solutions.txt: " + ex.getMessage()));
+                }
+            });
+        });
+
+        batchButton.addActionListener(_ -> {
+            // 1. Prompt for a folder of problems (e.g. test/)
+            JFileChooser chooser = new JFileChooser(new File("test"));
+            chooser.setDialogTitle("Select Folder of Problems");
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            chooser.setAcceptAllFileFilterUsed(false);
+
+            if (chooser.showOpenDialog(null) != JFileChooser.APPROVE_OPTION) {
+                return; // Cancelled
+            }
+
+            List<File> problems = findProblemFolders(chooser.getSelectedFile());
+            if (problems.isEmpty()) {
+                JOptionPane.showMessageDialog(frame, "No problem.txt found in the selected folder.");
+                return;
+            }
 
-            // 3. Prompt for heuristic if not UCS
-            if (!method.equals("UCS")) {
-                String[] heuristics = { "DUMBASS", "LAZY" };
-                heuristic = (String) JOptionPane.showInputDialog(
-                        null,
-                        "Choose heuristic:",
-                        "Select Heuristic",
-                        JOptionPane.PLAIN_MESSAGE,
-                        null,
-                        heuristics,
-                        heuristics[0]);
+            // 2. Prompt for method (or all of them), heuristic and parallelism
+            String[] batchMethods = new String[METHODS.length + 1];
+            batchMethods[0] = "ALL";
+            System.arraycopy(METHODS, 0, batchMethods, 1, METHODS.length);
+            String method = chooseMethod(batchMethods);
+            if (method == null)
+                return; // Cancelled
 
+            String heuristic = null;
+            if (usesHeuristic(method)) {
+                heuristic = chooseHeuristic();
                 if (heuristic == null)
                     return; // Cancelled
             }
 
-            // 4. Construct command
-            File problemFile = selectedFolder;
+            String parallelism = JOptionPane.showInputDialog(frame, "Solvers to run in parallel:",
+                    Runtime.getRuntime().availableProcessors());
+            if (parallelism == null)
+                return; // Cancelled
 
-            List<String> command = new ArrayList<>();
-            command.add("./bin/main.exe");
-            command.add(problemFile.getAbsolutePath());
-            command.add(method);
-            if (heuristic != null) {
-                command.add(heuristic);
+            SolveScheduler batchScheduler;
+            try {
+                batchScheduler = new SolveScheduler(Integer.parseInt(parallelism.trim()));
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(frame, "Please enter a positive integer.");
+                return;
             }
 
-            try {
-                ProcessBuilder pb = new ProcessBuilder(command);
-                pb.redirectErrorStream(true);
-                Process process = pb.start();
-
-                BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-                StringBuilder output = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    output.append(line).append("\n");
+            // 3. Queue every problem and show the job table
+            BatchWindow batch = new BatchWindow(batchScheduler, this::showSolutionViewer);
+            for (File problem : problems) {
+                for (String m : method.equals("ALL") ? METHODS : new String[] { method }) {
+                    batch.submit(problem, m, usesHeuristic(m) ? heuristic : null, (String) costChoice.getSelectedItem());
                 }
+            }
+            batch.show();
+        });
 
-                process.waitFor();
+        frame.setVisible(true);
+    }
 
-                // 5. Read solutions.txt
-                File solutionsFile = new File(problemFile, "solutions.txt");
-                if (!solutionsFile.exists()) {
-                    JOptionPane.showMessageDialog(null, "solutions.txt not found.");
-                    return;
-                }
+    private static String chooseMethod(String[] methods) {
+        return (String) JOptionPane.showInputDialog(
+                null,
+                "Choose solving method:",
+                "Solve Puzzle",
+                JOptionPane.PLAIN_MESSAGE,
+                null,
+                methods,
+                methods[0]);
+    }
 
-                List<char[][]> steps = new ArrayList<>();
-                int runtime, visited, numSteps, h, w;
+    /** An ARA* bound for people: the solution's cost is at most this factor above the optimum. */
+    private static String boundText(double bound) {
+        return bound <= 1 ? "proven optimal" : String.format("at most %.2fx optimal", bound);
+    }
 
-                try (BufferedReader solReader = new BufferedReader(new java.io.FileReader(solutionsFile))) {
-                    runtime = Integer.parseInt(solReader.readLine().trim());
-                    visited = Integer.parseInt(solReader.readLine().trim());
-                    numSteps = Integer.parseInt(solReader.readLine().trim());
+    /** UCS and BIDI search blind; the others ask for a heuristic. */
+    private static boolean usesHeuristic(String method) {
+        return !method.equals("UCS") && !method.equals("BIDI");
+    }
 
-                    String[] dims = solReader.readLine().trim().split("\\s+");
-                    h = Integer.parseInt(dims[0]);
-                    w = Integer.parseInt(dims[1]);
+    /** One of the engine's heuristics, or a composite typed in (e.g. MAX(BLOCKERS,PDB)). */
+    private String chooseHeuristic() {
+        if (!heuristics.isDone()) {
+            // still listing: wait in a modal dialog, which keeps the EDT handling events
+            JOptionPane pane = new JOptionPane("Loading the solver's heuristics...", JOptionPane.INFORMATION_MESSAGE,
+                    JOptionPane.DEFAULT_OPTION, null, new Object[] { "Cancel" });
+            JDialog loading = pane.createDialog(null, "Select Heuristic");
+            heuristics.whenComplete((_, _) -> SwingUtilities.invokeLater(loading::dispose));
+            loading.setVisible(true);
+            if (!heuristics.isDone())
+                return null; // Cancelled
+        }
+        List<String> names;
+        try {
+            names = heuristics.get(); // done, so this does not block
+        } catch (ExecutionException | InterruptedException ex) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            JOptionPane.showMessageDialog(null, "Cannot list heuristics: " + cause.getMessage());
+            return null;
+        }
 
-                    for (int s = 0; s < numSteps; s++) {
-                        char[][] board = new char[h][w];
-                        for (int i = 0; i < h; i++) {
-                            String row = solReader.readLine();
-                            for (int j = 0; j < w; j++) {
-                                board[i][j] = row.charAt(j);
-                            }
-                        }
-                        steps.add(board);
-                    }
-                }
+        JComboBox<String> choice = new JComboBox<>(names.toArray(String[]::new));
+        choice.setEditable(true);
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.add(new JLabel("Choose heuristic (or MAX(a,b) / WEIGHTED(w,a)):"), BorderLayout.NORTH);
+        panel.add(choice, BorderLayout.CENTER);
+
+        int option = JOptionPane.showConfirmDialog(null, panel, "Select Heuristic",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        Object selected = choice.getSelectedItem();
+        if (option != JOptionPane.OK_OPTION || selected == null || selected.toString().isBlank())
+            return null;
+        return selected.toString().trim();
+    }
 
-                // 6. Save start.png and end.png
-                BufferedImage startImg = renderBoard(steps.get(0), w, h);
-                BufferedImage endImg = renderBoard(steps.get(steps.size() - 1), w, h);
-
-                ImageIO.write(startImg, "png", new File(problemFile, "start.png"));
-                ImageIO.write(endImg, "png", new File(problemFile, "end.png"));
-
-                // 7. Show metadata popup
-                JOptionPane.showMessageDialog(null,
-                        "Runtime: " + runtime + " ms\n" +
-                                "Visited Nodes: " + visited + "\n" +
-                                "Number of Steps: " + numSteps);
-
-                // 8. Show solution viewer
-                JFrame solutionFrame = new JFrame("Solution Viewer");
-                solutionFrame.setSize(600, 600);
-                solutionFrame.setLayout(new BorderLayout());
-
-                JPanel boardPanel = new JPanel();
-                boardPanel.setLayout(new GridLayout(h, w, 2, 2));
-                solutionFrame.add(boardPanel, BorderLayout.CENTER);
-
-                JButton prevButton = new JButton("Prev");
-                JButton nextButton = new JButton("Next");
-                JLabel stepLabel = new JLabel();
-
-                JPanel navPanel = new JPanel();
-                navPanel.add(prevButton);
-                navPanel.add(stepLabel);
-                navPanel.add(nextButton);
-                solutionFrame.add(navPanel, BorderLayout.SOUTH);
-
-                final int[] stepIndex = { 0 };
-
-                Runnable renderStep = () -> {
-                    boardPanel.removeAll();
-                    char[][] board = steps.get(stepIndex[0]);
-
-                    for (int i = 0; i < h; i++) {
-                        for (int j = 0; j < w; j++) {
-                            JPanel cell = new JPanel();
-                            cell.setPreferredSize(new Dimension(40, 40));
-                            cell.setBorder(BorderFactory.createLineBorder(Color.BLACK));
-                            char c = board[i][j];
-                            cell.setBackground(c == '.' ? Color.white : getColorForChar(c));
-                            if (c != '.')
-                                cell.add(new JLabel(Character.toString(c)));
-                            boardPanel.add(cell);
-                        }
-                    }
+    /** The folder itself if it holds a problem.txt, otherwise every sub-folder that does. */
+    private static List<File> findProblemFolders(File folder) {
+        List<File> problems = new ArrayList<>();
+        if (new File(folder, "problem.txt").isFile()) {
+            problems.add(folder);
+            return problems;
+        }
+        File[] children = folder.listFiles(File::isDirectory);
+        if (children != null) {
+            java.util.Arrays.sort(children);
+            for (File child : children) {
+                if (new File(child, "problem.txt").isFile())
+                    problems.add(child);
+            }
+        }
+        return problems;
+    }
+
+    private void showSolutionViewer(SolverStream.Result solution, File problemFile) {
+        // Steps are rebuilt on demand from the move records
+        StepCache steps = new StepCache(solution);
 
-                    stepLabel.setText("STEP " + (stepIndex[0] + 1) + " / " + steps.size());
+        JFrame solutionFrame = new JFrame("Solution Viewer");
+        solutionFrame.setSize(600, 600);
+        solutionFrame.setLayout(new BorderLayout());
 
-                    boardPanel.revalidate();
-                    boardPanel.repaint();
-                };
+        BoardView boardView = new BoardView(40);
+        boardView.setBoard(steps.boardAt(0));
+        JPanel boardHolder = new JPanel(new GridBagLayout());
+        boardHolder.add(boardView);
+        solutionFrame.add(new JScrollPane(boardHolder), BorderLayout.CENTER);
 
+        JButton prevButton = new JButton("Prev");
+        JButton playButton = new JButton("Play");
+        JButton nextButton = new JButton("Next");
+        JButton saveButton = new JButton("Save");
+        JLabel stepLabel = new JLabel();
+        JLabel distanceLabel = new JLabel();
+        JSlider scrubSlider = new JSlider(0, steps.size() - 1, 0);
+        JSpinner speedSpinner = new JSpinner(new SpinnerNumberModel(2.0, 0.25, 20.0, 0.25));
+
+        JPanel navPanel = new JPanel();
+        navPanel.add(prevButton);
+        navPanel.add(playButton);
+        navPanel.add(stepLabel);
+        navPanel.add(nextButton);
+        navPanel.add(distanceLabel);
+        navPanel.add(new JLabel("Moves/s:"));
+        navPanel.add(speedSpinner);
+        navPanel.add(saveButton);
+
+        JPanel controlPanel = new JPanel(new BorderLayout());
+        controlPanel.add(scrubSlider, BorderLayout.NORTH);
+        controlPanel.add(navPanel, BorderLayout.SOUTH);
+        solutionFrame.add(controlPanel, BorderLayout.SOUTH);
+
+        // Exact distances from main.exe --enumerate, when the folder has them (mapping is cheap)
+        DistanceTable table = null;
+        File tableFile = problemFile == null ? null : new File(problemFile, "states.bin");
+        if (tableFile != null && tableFile.isFile()) {
+            try {
+                table = DistanceTable.open(tableFile);
+            } catch (java.io.IOException ex) {
+                distanceLabel.setText("(" + ex.getMessage() + ")");
+            }
+        }
+        DistanceTable distances = table;
+
+        final int[] stepIndex = { 0 };
+        final boolean[] playing = { false };
+
+        Runnable renderStep = () -> {
+            char[][] shown = steps.boardAt(stepIndex[0]);
+            boardView.showBoard(shown);
+            stepLabel.setText("STEP " + (stepIndex[0] + 1) + " / " + steps.size());
+            if (distances != null) {
+                int left = distances.distance(shown);
+                distanceLabel.setText(left < 0 ? "Optimal: ?"
+                        : left == DistanceTable.UNSOLVABLE ? "Optimal: unsolvable" : "Optimal moves left: " + left);
+            }
+            if (scrubSlider.getValue() != stepIndex[0])
+                scrubSlider.setValue(stepIndex[0]);
+        };
+
+        Runnable stopPlayback = () -> {
+            playing[0] = false;
+            playButton.setText("Play");
+            boardView.stopAnimation();
+        };
+
+        // Animate one move, then chain the next while playing
+        Runnable[] playNext = { null };
+        playNext[0] = () -> {
+            if (!playing[0] || stepIndex[0] >= steps.size() - 1) {
+                stopPlayback.run();
+                return;
+            }
+            double movesPerSecond = ((Number) speedSpinner.getValue()).doubleValue();
+            boardView.animate(solution.moves.get(stepIndex[0]), (int) (1000 / movesPerSecond), () -> {
+                stepIndex[0]++;
                 renderStep.run();
+                playNext[0].run();
+            });
+        };
 
-                prevButton.addActionListener(_ -> {
-                    if (stepIndex[0] > 0) {
-                        stepIndex[0]--;
-                        renderStep.run();
-                    }
-                });
+        renderStep.run();
 
-                nextButton.addActionListener(_ -> {
-                    if (stepIndex[0] < steps.size() - 1) {
-                        stepIndex[0]++;
-                        renderStep.run();
-                    }
-                });
+        prevButton.addActionListener(_ -> {
+            stopPlayback.run();
+            if (stepIndex[0] > 0) {
+                stepIndex[0]--;
+                renderStep.run();
+            }
+        });
 
-                solutionFrame.setVisible(true);
+        nextButton.addActionListener(_ -> {
+            stopPlayback.run();
+            if (stepIndex[0] < steps.size() - 1) {
+                stepIndex[0]++;
+                renderStep.run();
+            }
+        });
 
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(null,
-                        "Failed to run solver or read output: " + ex.getMessage());
+        playButton.addActionListener(_ -> {
+            if (playing[0]) {
+                stopPlayback.run();
+                renderStep.run();
+                return;
             }
+            if (stepIndex[0] >= steps.size() - 1)
+                stepIndex[0] = 0; // replay from the start
+            renderStep.run();
+            playing[0] = true;
+            playButton.setText("Pause");
+            playNext[0].run();
         });
 
-        frame.setVisible(true);
+        scrubSlider.addChangeListener(_ -> {
+            if (scrubSlider.getValue() == stepIndex[0])
+                return;
+            stopPlayback.run();
+            stepIndex[0] = scrubSlider.getValue();
+            renderStep.run();
+        });
+
+        // Only touch the disk when asked to, and never on the EDT
+        saveButton.addActionListener(_ -> {
+            saveButton.setEnabled(false);
+            scheduler.execute(() -> {
+                String message;
+                try {
+                    saveSolution(problemFile, solution);
+                    message = "Solution saved to " + problemFile.getAbsolutePath();
+                } catch (Exception ex) {
+                    message = "Error saving solution: " + ex.getMessage();
+                }
+                String finalMessage = message;
+                SwingUtilities.invokeLater(() -> {
+                    saveButton.setEnabled(true);
+                    JOptionPane.showMessageDialog(solutionFrame, finalMessage);
+                });
+            });
+        });
+
+        solutionFrame.setVisible(true);
+    }
+
+    private void saveSolution(File problemFile, SolverStream.Result solution) throws java.io.IOException {
+        int h = solution.height, w = solution.width;
+
+        SolutionFile.write(new File(problemFile, "solutions.txt"), solution);
+
+        StepCache replay = new StepCache(solution);
+        BufferedImage startImg = renderBoard(solution.initial, w, h);
+        BufferedImage endImg = renderBoard(replay.boardAt(replay.size() - 1), w, h);
+
+        ImageIO.write(startImg, "png", new File(problemFile, "start.png"));
+        ImageIO.write(endImg, "png", new File(problemFile, "end.png"));
     }
 
     private static final Map<Character, Color> fixedColorMap = Map.ofEntries(
@@ -469,25 +650,14 @@ public class GUI {
         return fixedColorMap.getOrDefault(ch, Color.GRAY);
     }
 
-    private BufferedImage renderBoard(char[][] board, int w, int h) {
+    static BufferedImage renderBoard(char[][] board, int w, int h) {
         int cellSize = 40;
         BufferedImage image = new BufferedImage(w * cellSize, h * cellSize, BufferedImage.TYPE_INT_ARGB);
         Graphics2D g = image.createGraphics();
 
         for (int i = 0; i < h; i++) {
             for (int j = 0; j < w; j++) {
-                char c = board[i][j];
-                Color color = c == '.' ? Color.WHITE : getColorForChar(c);
-
-                g.setColor(color);
-                g.fillRect(j * cellSize, i * cellSize, cellSize, cellSize);
-                g.setColor(Color.BLACK);
-                g.drawRect(j * cellSize, i * cellSize, cellSize, cellSize);
-
-                if (c != '.' && c != ' ') {
-                    g.setColor(Color.BLACK);
-                    g.drawString(Character.toString(c), j * cellSize + 15, i * cellSize + 25);
-                }
+                BoardView.paintCell(g, board[i][j], j * cellSize, i * cellSize, cellSize, Color.WHITE);
             }
         }
 
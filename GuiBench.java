@@ -0,0 +1,171 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Micro-benchmarks for the GUI's parsing and rendering paths, the Java half of
+ * {@code main.exe --bench}. Written in the style of JMH but with no
+ * dependencies: every case runs for a warmup period, then for several timed
+ * iterations, and reports the mean and best time per operation. Results can be
+ * saved as TSV and compared with an earlier run.
+ *
+ * <pre>
+ * java GuiBench [problem folder with solutions.txt] [--save FILE] [--baseline FILE]
+ * </pre>
+ */
+final class GuiBench {
+
+    private static final long WARMUP_NS = 1_000_000_000L;
+    private static final long ITERATION_NS = 250_000_000L;
+    private static final int ITERATIONS = 8;
+    private static final double TOLERANCE = 0.10;
+
+    /** One benchmarked operation; its result is consumed so the JIT cannot drop it. */
+    private interface Op {
+        Object run() throws Exception;
+    }
+
+    private record Score(String name, double meanNs, double bestNs) {
+    }
+
+    private static int sink;
+
+    private GuiBench() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        File folder = new File("test/tc4 - ucs");
+        String save = null, baseline = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--save" -> save = args[++i];
+                case "--baseline" -> baseline = args[++i];
+                default -> folder = new File(args[i]);
+            }
+        }
+
+        // inputs: the folder's solutions.txt (either format), the same solution as a
+        // --stream transcript and in the compact format
+        File original = new File(folder, "solutions.txt");
+        SolverStream.Result solution = SolutionFile.read(original);
+        String transcript = transcript(solution);
+        File compact = File.createTempFile("guibench", ".txt");
+        compact.deleteOnExit();
+        SolutionFile.write(compact, solution);
+        int steps = solution.moves.size() + 1;
+
+        List<Score> scores = new ArrayList<>();
+        scores.add(measure("SolverStream.read", () -> SolverStream.read(
+                new BufferedReader(new StringReader(transcript)), _ -> {
+                })));
+        scores.add(measure("SolutionFile.read (compact)", () -> SolutionFile.read(compact)));
+        scores.add(measure("SolutionFile.read (" + folder.getName() + ")", () -> SolutionFile.read(original)));
+        scores.add(measure("StepCache forward x" + steps, () -> {
+            StepCache cache = new StepCache(solution);
+            char[][] board = null;
+            for (int s = 0; s < steps; s++)
+                board = cache.boardAt(s);
+            return board;
+        }));
+        scores.add(measure("StepCache backward x" + steps, () -> {
+            StepCache cache = new StepCache(solution);
+            char[][] board = null;
+            for (int s = steps - 1; s >= 0; s--)
+                board = cache.boardAt(s);
+            return board;
+        }));
+        scores.add(measure("GUI.renderBoard", () -> GUI.renderBoard(solution.initial, solution.width, solution.height)));
+
+        if (save != null)
+            write(new File(save), scores);
+        if (baseline != null && compare(read(new File(baseline)), scores) > 0)
+            System.exit(3);
+    }
+
+    private static Score measure(String name, Op op) throws Exception {
+        // warmup: let the JIT settle, and size the batch so one timed iteration is ~ITERATION_NS
+        long ops = 0, start = System.nanoTime();
+        while (System.nanoTime() - start < WARMUP_NS) {
+            consume(op.run());
+            ops++;
+        }
+        long batch = Math.max(1, ops * ITERATION_NS / WARMUP_NS);
+
+        double total = 0, best = Double.MAX_VALUE;
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            long begin = System.nanoTime();
+            for (long i = 0; i < batch; i++)
+                consume(op.run());
+            double perOp = (double) (System.nanoTime() - begin) / batch;
+            total += perOp;
+            best = Math.min(best, perOp);
+        }
+
+        Score score = new Score(name, total / ITERATIONS, best);
+        System.out.printf("  %-36s %12.1f ns/op   best %12.1f ns/op%n", name, score.meanNs(), score.bestNs());
+        return score;
+    }
+
+    private static void consume(Object result) {
+        sink ^= System.identityHashCode(result);
+    }
+
+    /** The records main.exe --stream would have written for {@code solution}. */
+    private static String transcript(SolverStream.Result solution) {
+        StringBuilder text = new StringBuilder("BOARD ").append(solution.height).append(' ').append(solution.width);
+        for (char[] row : solution.initial)
+            text.append(' ').append(row);
+        text.append('\n');
+        for (SolverStream.Move move : solution.moves)
+            text.append("MOVE ").append(move.piece()).append(' ').append(move.direction()).append(' ')
+                    .append(move.distance()).append('\n');
+        text.append("DONE ").append(solution.runtime).append(' ').append(solution.visited).append(' ')
+                .append(solution.moves.size() + 1).append('\n');
+        return text.toString();
+    }
+
+    private static void write(File file, List<Score> scores) throws IOException {
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println("case\tmean_ns\tbest_ns");
+            for (Score score : scores)
+                writer.printf("%s\t%.1f\t%.1f%n", score.name(), score.meanNs(), score.bestNs());
+        }
+    }
+
+    private static Map<String, Score> read(File file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        List<String> lines = Files.readAllLines(file.toPath());
+        for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+            String[] fields = line.split("\t");
+            if (fields.length >= 3)
+                scores.put(fields[0], new Score(fields[0], Double.parseDouble(fields[1]), Double.parseDouble(fields[2])));
+        }
+        return scores;
+    }
+
+    /** Same rule as the C++ side: slower only if even the best iteration lost to the old mean. */
+    private static int compare(Map<String, Score> baseline, List<Score> scores) {
+        int regressions = 0;
+        for (Score score : scores) {
+            Score before = baseline.get(score.name());
+            if (before == null)
+                continue;
+            if (score.bestNs() > before.meanNs() * (1 + TOLERANCE)) {
+                regressions++;
+                System.out.printf("  REGRESSION  %s: %.1f -> %.1f ns/op%n", score.name(), before.meanNs(), score.meanNs());
+            } else if (score.meanNs() < before.bestNs() * (1 - TOLERANCE)) {
+                System.out.printf("  improved    %s: %.1f -> %.1f ns/op%n", score.name(), before.meanNs(), score.meanNs());
+            }
+        }
+        System.out.println("[GUIBENCH] " + regressions + " regressed, tolerance " + (int) (TOLERANCE * 100) + "%");
+        return regressions;
+    }
+}
@@ -0,0 +1,132 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.swing.JComponent;
+
+/**
+ * Live chart of the METRICS records a solve streams (engines built with
+ * {@code make METRICS=1}): open and closed set sizes and the expansion rate
+ * over time, each scaled to its own peak, above a bar splitting the time
+ * spent so far between the search phases.
+ */
+final class MetricsChart extends JComponent {
+
+    private static final String[] SERIES = { "open", "closed", "rate" };
+    private static final Color[] SERIES_COLORS = { new Color(0x1f77b4), new Color(0xff7f0e), new Color(0x2ca02c) };
+    private static final String[] PHASES = { "load", "generate", "hash", "heuristic", "queue" };
+    private static final Color[] PHASE_COLORS = { new Color(0x9467bd), new Color(0x8c564b), new Color(0xe377c2),
+            new Color(0x17becf), new Color(0xbcbd22) };
+
+    private final List<double[]> samples = new ArrayList<>(); // ms, then one value per SERIES
+    private Map<String, Double> latest;
+
+    MetricsChart() {
+        setPreferredSize(new Dimension(500, 240));
+        setOpaque(true);
+    }
+
+    /** Adds a record; the same record handed over twice is only counted once. */
+    void add(Map<String, Double> metrics) {
+        if (metrics == null || metrics == latest)
+            return;
+        double ms = metrics.getOrDefault("ms", 0.0);
+        double expanded = metrics.getOrDefault("expanded", 0.0);
+        double rate = expanded * 1000 / Math.max(1, ms); // the first sample: average since the start
+        if (latest != null) {
+            double dt = ms - latest.getOrDefault("ms", 0.0);
+            if (dt <= 0)
+                return;
+            rate = (expanded - latest.getOrDefault("expanded", 0.0)) * 1000 / dt;
+        }
+        latest = metrics;
+        samples.add(new double[] { ms, metrics.getOrDefault("open", 0.0), metrics.getOrDefault("closed", 0.0), rate });
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        Graphics2D g = (Graphics2D) graphics.create();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, getWidth(), getHeight());
+        g.setFont(g.getFont().deriveFont(Font.PLAIN, 11f));
+        if (latest == null) {
+            g.dispose();
+            return;
+        }
+
+        int left = 8, right = getWidth() - 8, top = 22, bottom = getHeight() - 64;
+        g.setColor(Color.LIGHT_GRAY);
+        g.drawRect(left, top, right - left, bottom - top);
+
+        // series, each against its own peak; the legend shows the latest values
+        double start = samples.get(0)[0], end = Math.max(start + 1, samples.get(samples.size() - 1)[0]);
+        int x = left;
+        for (int s = 0; s < SERIES.length; s++) {
+            double peak = 1;
+            for (double[] sample : samples)
+                peak = Math.max(peak, sample[s + 1]);
+            g.setColor(SERIES_COLORS[s]);
+            g.setStroke(new BasicStroke(1.5f));
+            for (int i = 1; i < samples.size(); i++) {
+                double[] a = samples.get(i - 1), b = samples.get(i);
+                g.drawLine(xOf(a[0], start, end, left, right), yOf(a[s + 1], peak, top, bottom),
+                        xOf(b[0], start, end, left, right), yOf(b[s + 1], peak, top, bottom));
+            }
+            String label = SERIES[s] + " " + format(samples.get(samples.size() - 1)[s + 1]) + (s == 2 ? "/s" : "");
+            g.drawString(label, x, top - 6);
+            x += g.getFontMetrics().stringWidth(label) + 16;
+        }
+
+        // share of the timed phases
+        double total = 0;
+        for (String phase : PHASES)
+            total += latest.getOrDefault(phase + "Ms", 0.0);
+        int barTop = bottom + 8, barHeight = 14;
+        x = left;
+        int legend = left;
+        for (int p = 0; p < PHASES.length; p++) {
+            double ms = latest.getOrDefault(PHASES[p] + "Ms", 0.0);
+            int width = total <= 0 ? 0 : (int) Math.round((right - left) * ms / total);
+            g.setColor(PHASE_COLORS[p]);
+            g.fillRect(x, barTop, width, barHeight);
+            x += width;
+            String label = PHASES[p] + " " + Math.round(ms) + " ms";
+            g.fillRect(legend, barTop + barHeight + 6, 8, 8);
+            g.setColor(Color.DARK_GRAY);
+            g.drawString(label, legend + 11, barTop + barHeight + 14);
+            legend += g.getFontMetrics().stringWidth(label) + 22;
+        }
+
+        // counters and memory high-water marks
+        double generated = Math.max(1, latest.getOrDefault("generated", 0.0));
+        g.drawString("duplicates " + Math.round(100 * latest.getOrDefault("duplicates", 0.0) / generated) + "%"
+                + "   reopened " + format(latest.getOrDefault("reopened", 0.0))
+                + "   stale " + format(latest.getOrDefault("stale", 0.0))
+                + "   peak open " + format(latest.getOrDefault("openPeak", 0.0))
+                + "   search " + format(latest.getOrDefault("bytesPeak", 0.0) / (1 << 20)) + " MB"
+                + "   process " + format(latest.getOrDefault("rssPeakKB", 0.0) / 1024) + " MB",
+                left, getHeight() - 8);
+        g.dispose();
+    }
+
+    private static int xOf(double ms, double start, double end, int left, int right) {
+        return left + (int) Math.round((right - left) * (ms - start) / (end - start));
+    }
+
+    private static int yOf(double value, double peak, int top, int bottom) {
+        return bottom - (int) Math.round((bottom - top - 2) * value / peak);
+    }
+
+    private static String format(double value) {
+        return value >= 10_000_000 ? Math.round(value / 1_000_000) + "M"
+                : value >= 10_000 ? Math.round(value / 1_000) + "k" : Long.toString(Math.round(value));
+    }
+}
@@ -0,0 +1,107 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Writes problem.txt from the editor grid: the board with a one-cell ring around
+ * it, where the exit is the K on the ring. The board is checked first, with the
+ * rules the solver's parser applies, so a saved problem always loads.
+ */
+final class ProblemFile {
+
+    enum Exit { UP, DOWN, LEFT, RIGHT }
+
+    private ProblemFile() {
+    }
+
+    /**
+     * Writes {@code grid} ({@code height + 2} by {@code width + 2}, '\0' for empty)
+     * to {@code file}; throws IllegalArgumentException, saying why, for a board the
+     * solver would refuse.
+     */
+    static void write(File file, char[][] grid, int height, int width) throws IOException {
+        Exit exit = null;
+        int exitAt = -1; // column of an UP / DOWN exit, row of a LEFT / RIGHT one
+        for (int i = 1; i <= height; i++) {
+            if (grid[i][0] == 'K') {
+                exit = only(exit, Exit.LEFT);
+                exitAt = i;
+            }
+            if (grid[i][width + 1] == 'K') {
+                exit = only(exit, Exit.RIGHT);
+                exitAt = i;
+            }
+        }
+        for (int j = 1; j <= width; j++) {
+            if (grid[0][j] == 'K') {
+                exit = only(exit, Exit.UP);
+                exitAt = j;
+            }
+            if (grid[height + 1][j] == 'K') {
+                exit = only(exit, Exit.DOWN);
+                exitAt = j;
+            }
+        }
+        if (exit == null)
+            throw new IllegalArgumentException("Put the exit K on the ring around the board.");
+
+        // every piece one straight line of two or more adjacent cells
+        TreeMap<Character, int[]> extents = new TreeMap<>(); // top, left, bottom, right, cells
+        for (int i = 1; i <= height; i++) {
+            for (int j = 1; j <= width; j++) {
+                char c = grid[i][j];
+                if (c == '\0')
+                    continue;
+                int[] e = extents.computeIfAbsent(c, _ -> new int[] {height, width, 0, 0, 0});
+                e[0] = Math.min(e[0], i);
+                e[1] = Math.min(e[1], j);
+                e[2] = Math.max(e[2], i);
+                e[3] = Math.max(e[3], j);
+                e[4]++;
+            }
+        }
+        extents.forEach((id, e) -> {
+            int rows = e[2] - e[0] + 1, cols = e[3] - e[1] + 1;
+            if ((rows != 1 && cols != 1) || rows * cols != e[4] || e[4] < 2)
+                throw new IllegalArgumentException("Piece " + id + " must be one straight line of two or more adjacent cells.");
+        });
+
+        int[] primary = extents.get('P');
+        if (primary == null)
+            throw new IllegalArgumentException("Place the primary piece P.");
+        boolean vertical = exit == Exit.UP || exit == Exit.DOWN;
+        boolean inLine = vertical
+                ? primary[1] == primary[3] && primary[2] > primary[0] && primary[1] == exitAt
+                : primary[0] == primary[2] && primary[3] > primary[1] && primary[0] == exitAt;
+        if (!inLine)
+            throw new IllegalArgumentException("The exit must be in line with P, at the end it slides towards.");
+
+        List<String> lines = new ArrayList<>();
+        lines.add(height + " " + width);
+        lines.add(String.valueOf(extents.size() - 1));
+        if (exit == Exit.UP)
+            lines.add(" ".repeat(exitAt - 1) + "K");
+        for (int i = 1; i <= height; i++) {
+            StringBuilder row = new StringBuilder(width + 1);
+            if (exit == Exit.LEFT)
+                row.append(i == exitAt ? 'K' : ' ');
+            for (int j = 1; j <= width; j++)
+                row.append(grid[i][j] == '\0' ? '.' : grid[i][j]);
+            if (exit == Exit.RIGHT && i == exitAt)
+                row.append('K');
+            lines.add(row.toString());
+        }
+        if (exit == Exit.DOWN)
+            lines.add(" ".repeat(exitAt - 1) + "K");
+        Files.writeString(file.toPath(), String.join("\n", lines));
+    }
+
+    private static Exit only(Exit previous, Exit exit) {
+        if (previous != null)
+            throw new IllegalArgumentException("The board can only have one exit.");
+        return exit;
+    }
+}
@@ -0,0 +1,108 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Reads and writes solutions.txt. The current format stores the initial board
+ * once followed by one move record per step (see src/class/Protocol/Protocol.hpp);
+ * the older format with every intermediate board is still readable and is
+ * turned into move records while it is read.
+ */
+final class SolutionFile {
+
+    static final String MOVES_HEADER = "MOVES";
+
+    private SolutionFile() {
+    }
+
+    static SolverStream.Result read(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            SolverStream.Result result = new SolverStream.Result();
+
+            String first = reader.readLine().trim();
+            boolean compact = first.equals(MOVES_HEADER);
+            result.runtime = Long.parseLong(compact ? reader.readLine().trim() : first);
+            result.visited = Long.parseLong(reader.readLine().trim());
+            result.numSteps = Integer.parseInt(reader.readLine().trim());
+
+            String[] dims = reader.readLine().trim().split("\\s+");
+            result.height = Integer.parseInt(dims[0]);
+            result.width = Integer.parseInt(dims[1]);
+            result.initial = readBoard(reader, result.height);
+
+            if (compact) {
+                for (int s = 1; s < result.numSteps; s++) {
+                    String[] parts = reader.readLine().trim().split("\\s+");
+                    result.moves.add(new SolverStream.Move(
+                            parts[0].charAt(0), parts[1].charAt(0), Integer.parseInt(parts[2])));
+                }
+            } else {
+                // full-board format: only ever keep two boards around
+                char[][] previous = result.initial;
+                for (int s = 1; s < result.numSteps; s++) {
+                    char[][] board = readBoard(reader, result.height);
+                    result.moves.add(diff(previous, board));
+                    previous = board;
+                }
+            }
+
+            result.solved = true;
+            return result;
+        }
+    }
+
+    static void write(File file, SolverStream.Result solution) throws IOException {
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println(MOVES_HEADER);
+            writer.println(solution.runtime);
+            writer.println(solution.visited);
+            writer.println(solution.moves.size() + 1);
+            writer.println(solution.height + " " + solution.width);
+            for (char[] row : solution.initial)
+                writer.println(new String(row));
+            for (SolverStream.Move move : solution.moves)
+                writer.println(move.piece() + " " + move.direction() + " " + move.distance());
+        }
+    }
+
+    private static char[][] readBoard(BufferedReader reader, int height) throws IOException {
+        char[][] board = new char[height][];
+        for (int i = 0; i < height; i++)
+            board[i] = reader.readLine().toCharArray();
+        return board;
+    }
+
+    /** The single slide that turns {@code before} into {@code after}. */
+    private static SolverStream.Move diff(char[][] before, char[][] after) throws IOException {
+        char piece = 0;
+        for (int i = 0; i < after.length && piece == 0; i++) {
+            for (int j = 0; j < after[i].length; j++) {
+                if (after[i][j] != before[i][j] && after[i][j] != '.') {
+                    piece = after[i][j];
+                    break;
+                }
+            }
+        }
+        if (piece == 0)
+            throw new IOException("Two consecutive boards are identical.");
+
+        int[] from = firstCell(before, piece);
+        int[] to = firstCell(after, piece);
+        int dr = to[0] - from[0], dc = to[1] - from[1];
+        if (dr != 0)
+            return new SolverStream.Move(piece, dr < 0 ? 'U' : 'D', Math.abs(dr));
+        return new SolverStream.Move(piece, dc < 0 ? 'L' : 'R', Math.abs(dc));
+    }
+
+    private static int[] firstCell(char[][] board, char piece) {
+        for (int i = 0; i < board.length; i++) {
+            for (int j = 0; j < board[i].length; j++) {
+                if (board[i][j] == piece)
+                    return new int[] { i, j };
+            }
+        }
+        return new int[] { -1, -1 };
+    }
+}
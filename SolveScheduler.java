@@ -0,0 +1,187 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import javax.swing.SwingUtilities;
+
+/**
+ * Runs solves off the event dispatch thread. Every job gets its own virtual
+ * thread; a semaphore caps how many run at once, and each running job borrows
+ * a warm solver daemon from a pool. Listeners are always called back on the EDT,
+ * with a snapshot of the job taken when it changed.
+ */
+final class SolveScheduler {
+
+    enum Status {
+        QUEUED, RUNNING, SOLVED, NO_SOLUTION, FAILED, CANCELLED
+    }
+
+    static final class Job {
+        final File folder;
+        final String method;
+        final String heuristic;
+        final String cost; // MOVES or CELLS
+        final SolverClient.Budget budget;
+
+        volatile Status status = Status.QUEUED;
+        volatile long wallMs;
+        volatile SolverStream.Progress progress;
+        volatile Map<String, Double> metrics; // latest METRICS record, if the engine writes them
+        volatile SolverStream.Result best;    // ARA*: best solution so far
+        volatile SolverStream.Result result;
+        volatile String error;
+
+        private volatile SolverClient client;
+        private volatile boolean cancelled;
+
+        Job(File folder, String method, String heuristic, String cost, SolverClient.Budget budget) {
+            this.folder = folder;
+            this.method = method;
+            this.heuristic = heuristic;
+            this.cost = cost;
+            this.budget = budget;
+        }
+
+        boolean isFinished() {
+            return status != Status.QUEUED && status != Status.RUNNING;
+        }
+    }
+
+    /**
+     * A job as it was when its listener was notified. The Job itself keeps changing
+     * on the solver's thread until the callback runs on the EDT. {@code metrics} is
+     * set only on the update a new METRICS record caused, so each sample arrives once.
+     */
+    record Update(Job job, Status status, long wallMs, SolverStream.Progress progress,
+            Map<String, Double> metrics, SolverStream.Result best, SolverStream.Result result, String error) {
+    }
+
+    interface Listener {
+        void jobUpdated(Update update);
+    }
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore slots;
+    private final ConcurrentLinkedQueue<SolverClient> idleClients = new ConcurrentLinkedQueue<>();
+
+    SolveScheduler(int parallelism) {
+        this.slots = new Semaphore(Math.max(1, parallelism));
+    }
+
+    Job submit(File folder, String method, String heuristic, String cost, Listener listener) {
+        return submit(folder, method, heuristic, cost, SolverClient.Budget.NONE, listener);
+    }
+
+    Job submit(File folder, String method, String heuristic, String cost, SolverClient.Budget budget, Listener listener) {
+        Job job = new Job(folder, method, heuristic, cost, budget);
+        executor.execute(() -> run(job, listener));
+        return job;
+    }
+
+    /** Runs a short task (e.g. writing images) on the scheduler's threads. */
+    void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /** Stops the job; an ARA* job that has a solution still finishes SOLVED, with its best one. */
+    void cancel(Job job) {
+        job.cancelled = true;
+        SolverClient client = job.client;
+        if (client != null)
+            client.cancel();
+    }
+
+    /** Stops taking jobs and ends every pooled daemon; clients still solving are ended when they return. */
+    void shutdown() {
+        executor.shutdownNow();
+        closeIdleClients();
+    }
+
+    private void closeIdleClients() {
+        SolverClient client;
+        while ((client = idleClients.poll()) != null)
+            client.close();
+    }
+
+    private void run(Job job, Listener listener) {
+        try {
+            slots.acquire();
+        } catch (InterruptedException ex) {
+            finish(job, Status.CANCELLED, listener);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (job.cancelled) {
+                finish(job, Status.CANCELLED, listener);
+                return;
+            }
+            job.status = Status.RUNNING;
+            notify(job, listener);
+
+            SolverClient client = idleClients.poll();
+            while (client != null && !client.isAlive())
+                client = idleClients.poll();
+            job.client = client != null ? client : new SolverClient();
+
+            try {
+                job.result = job.client.solve(job.folder, job.method, job.heuristic, job.cost, job.budget, () -> job.cancelled,
+                        new SolverStream.Listener() {
+                            @Override
+                            public void onProgress(SolverStream.Progress progress) {
+                                job.progress = progress;
+                                job.wallMs = (System.nanoTime() - start) / 1_000_000;
+                                SolveScheduler.notify(job, listener);
+                            }
+
+                            @Override
+                            public void onMetrics(Map<String, Double> metrics) {
+                                job.metrics = metrics;
+                                SolveScheduler.notify(job, listener, metrics);
+                            }
+
+                            @Override
+                            public void onImproved(SolverStream.Result best) {
+                                job.best = best;
+                                SolveScheduler.notify(job, listener);
+                            }
+                        });
+                idleClients.add(job.client);
+                if (executor.isShutdown())
+                    closeIdleClients(); // shut down while this job ran: nothing will reuse it
+            } catch (IOException ex) {
+                job.client.close();
+                throw ex;
+            }
+
+            job.wallMs = (System.nanoTime() - start) / 1_000_000;
+            Status status = job.result.cancelled ? Status.CANCELLED
+                    : job.result.solved ? Status.SOLVED : Status.NO_SOLUTION;
+            finish(job, status, listener);
+        } catch (Exception ex) {
+            job.wallMs = (System.nanoTime() - start) / 1_000_000;
+            job.error = ex.getMessage();
+            finish(job, job.cancelled ? Status.CANCELLED : Status.FAILED, listener);
+        } finally {
+            slots.release();
+        }
+    }
+
+    private void finish(Job job, Status status, Listener listener) {
+        job.status = status;
+        notify(job, listener);
+    }
+
+    private static void notify(Job job, Listener listener) {
+        notify(job, listener, null);
+    }
+
+    private static void notify(Job job, Listener listener, Map<String, Double> metrics) {
+        Update update = new Update(job, job.status, job.wallMs, job.progress, metrics, job.best, job.result, job.error);
+        SwingUtilities.invokeLater(() -> listener.jobUpdated(update));
+    }
+}
@@ -0,0 +1,99 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * One long-lived {@code main.exe --daemon} process. Requests are solved one at
+ * a time; the engine stays warm and remembers boards it has solved before.
+ * See src/class/Daemon/Daemon.hpp for the request format.
+ */
+final class SolverClient implements AutoCloseable {
+
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    /** Gives up after {@code timeoutMs} or {@code nodes} expansions, 0 for no limit; see {@code --timeout}. */
+    record Budget(long timeoutMs, long nodes) {
+        static final Budget NONE = new Budget(0, 0);
+    }
+
+    private final Process process;
+    private final BufferedWriter writer;
+    private final BufferedReader reader;
+    private volatile String current; // id of the request being solved
+
+    SolverClient() throws IOException {
+        process = new ProcessBuilder("./bin/main.exe", "--daemon")
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+        reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Sends problem.txt of {@code folder} and reads the answer; not for concurrent use.
+     * {@code cancelled} is checked once the request is sent, so a cancel that came
+     * before there was a request id to send still stops it.
+     */
+    SolverStream.Result solve(File folder, String method, String heuristic, String cost, Budget budget,
+            BooleanSupplier cancelled, SolverStream.Listener listener) throws IOException {
+        List<String> problem = Files.readAllLines(new File(folder, "problem.txt").toPath());
+        String id = Long.toString(NEXT_ID.incrementAndGet());
+        current = id;
+        try {
+            StringBuilder request = new StringBuilder();
+            request.append("SOLVE ").append(id).append(' ').append(method).append(' ')
+                    .append(heuristic == null ? "-" : heuristic.replace(" ", "")).append(' ')
+                    .append(cost).append(' ').append(budget.timeoutMs()).append(' ').append(budget.nodes()).append(' ')
+                    .append(problem.size()).append('\n');
+            for (String line : problem)
+                request.append(line).append('\n');
+            send(request.toString());
+            if (cancelled.getAsBoolean())
+                cancel();
+            return SolverStream.read(reader, listener);
+        } finally {
+            current = null;
+        }
+    }
+
+    /** Stops the request being solved, if any; {@link #solve} then returns a cancelled result. */
+    void cancel() {
+        String id = current;
+        if (id == null)
+            return;
+        try {
+            send("CANCEL " + id + "\n");
+        } catch (IOException ex) {
+            process.destroy();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            send("QUIT\n");
+            writer.close();
+        } catch (IOException ex) {
+            // already gone
+        }
+        process.destroy();
+    }
+
+    private void send(String text) throws IOException {
+        synchronized (writer) {
+            writer.write(text);
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reader for the line protocol written by {@code main.exe --stream} and
+ * {@code --daemon}. See src/class/Protocol/Protocol.hpp for the record layout.
+ */
+final class SolverStream {
+
+    record Progress(long expanded, long open, int bound, long elapsedMs) {
+    }
+
+    record Move(char piece, char direction, int distance) {
+    }
+
+    static final class Result {
+        int height, width;
+        char[][] initial;
+        final List<Move> moves = new ArrayList<>();
+        long runtime, visited;
+        int numSteps;
+        int cost;           // under the cost model searched with; numSteps - 1 for MOVES
+        double bound;       // ARA*: cost is at most bound times the optimum (1: optimal); 0 if not given
+        boolean solved;
+        boolean cancelled; // stopped by a CANCEL request
+        boolean cached;    // the daemon had solved this board before
+    }
+
+    interface Listener {
+        void onProgress(Progress progress);
+
+        /** A METRICS record (engines built with METRICS=1 only): counter name to value, in record order. */
+        default void onMetrics(Map<String, Double> metrics) {
+        }
+
+        /** An IMPROVED record (ARA* only): the best solution so far, with its bound. */
+        default void onImproved(Result best) {
+        }
+    }
+
+    private static final Pattern METRIC = Pattern.compile("\"(\\w+)\":(-?[0-9.]+)");
+
+    private SolverStream() {
+    }
+
+    private static List<String> heuristics;
+
+    /** Heuristic names the engine knows ({@code main.exe --list-heuristics}); read once. */
+    static synchronized List<String> heuristics() throws IOException {
+        if (heuristics == null) {
+            Process process = new ProcessBuilder("./bin/main.exe", "--list-heuristics").start();
+            List<String> names = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank())
+                        names.add(line.split("\t", 2)[0]);
+                }
+            } finally {
+                process.destroy();
+            }
+            if (names.isEmpty())
+                throw new IOException("Solver listed no heuristics.");
+            heuristics = List.copyOf(names);
+        }
+        return heuristics;
+    }
+
+    /**
+     * Consumes records until DONE / NOSOLUTION / CANCELLED; progress and improved
+     * solutions are forwarded as they arrive. An ERROR record is thrown as an IOException.
+     */
+    static Result read(BufferedReader reader, Listener listener) throws IOException {
+        Result result = new Result();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] parts = line.trim().split("\\s+");
+            switch (parts[0]) {
+                case "PROGRESS" -> listener.onProgress(new Progress(
+                        Long.parseLong(parts[1]),
+                        Long.parseLong(parts[2]),
+                        Integer.parseInt(parts[3]),
+                        Long.parseLong(parts[4])));
+                case "METRICS" -> listener.onMetrics(metrics(line));
+                case "BOARD" -> {
+                    result.height = Integer.parseInt(parts[1]);
+                    result.width = Integer.parseInt(parts[2]);
+                    result.initial = new char[result.height][];
+                    for (int i = 0; i < result.height; i++) {
+                        result.initial[i] = parts[3 + i].toCharArray();
+                    }
+                }
+                case "MOVE" -> result.moves.add(new Move(
+                        parts[1].charAt(0), parts[2].charAt(0), Integer.parseInt(parts[3])));
+                case "IMPROVED" -> {
+                    Result best = new Result();
+                    best.height = result.height;
+                    best.width = result.width;
+                    best.initial = result.initial;
+                    best.moves.addAll(result.moves);
+                    best.runtime = Long.parseLong(parts[1]);
+                    best.visited = Long.parseLong(parts[2]);
+                    best.numSteps = Integer.parseInt(parts[3]);
+                    best.cost = Integer.parseInt(parts[4]);
+                    best.bound = Double.parseDouble(parts[5]);
+                    best.solved = true;
+                    result.moves.clear(); // a better solution, or the final one, follows
+                    listener.onImproved(best);
+                }
+                case "DONE" -> {
+                    result.runtime = Long.parseLong(parts[1]);
+                    result.visited = Long.parseLong(parts[2]);
+                    result.numSteps = Integer.parseInt(parts[3]);
+                    result.cost = parts.length > 4 ? Integer.parseInt(parts[4]) : result.numSteps - 1;
+                    result.bound = parts.length > 5 ? Double.parseDouble(parts[5]) : 0;
+                    result.solved = true;
+                    return result;
+                }
+                case "NOSOLUTION" -> {
+                    result.runtime = Long.parseLong(parts[1]);
+                    result.visited = Long.parseLong(parts[2]);
+                    return result;
+                }
+                case "CANCELLED" -> {
+                    result.runtime = Long.parseLong(parts[1]);
+                    result.visited = Long.parseLong(parts[2]);
+                    result.cancelled = true;
+                    return result;
+                }
+                case "CACHED" -> result.cached = true;
+                case "ERROR" -> throw new IOException(line.trim().substring("ERROR".length()).trim());
+                default -> {
+                    // ignore anything the solver prints that is not a record
+                }
+            }
+        }
+        throw new IOException("Solver exited before finishing the solution.");
+    }
+
+    /** The flat JSON object of a METRICS record; only numeric fields are written. */
+    private static Map<String, Double> metrics(String line) {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        Matcher matcher = METRIC.matcher(line);
+        while (matcher.find())
+            metrics.put(matcher.group(1), Double.parseDouble(matcher.group(2)));
+        return metrics;
+    }
+
+    /** Slides {@code move.piece()} in place on {@code board}. */
+    static void apply(char[][] board, Move move) {
+        int dr = move.direction() == 'U' ? -1 : move.direction() == 'D' ? 1 : 0;
+        int dc = move.direction() == 'L' ? -1 : move.direction() == 'R' ? 1 : 0;
+        int h = board.length, w = board[0].length;
+
+        List<int[]> cells = new ArrayList<>();
+        for (int i = 0; i < h; i++) {
+            for (int j = 0; j < w; j++) {
+                if (board[i][j] == move.piece()) {
+                    cells.add(new int[] { i, j });
+                    board[i][j] = '.';
+                }
+            }
+        }
+        for (int[] cell : cells) {
+            board[cell[0] + dr * move.distance()][cell[1] + dc * move.distance()] = move.piece();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rebuilds any step of a solution on demand from its move records. Stepping
+ * to a neighbour replays (or undoes) a single move on the current board; a
+ * jump starts from the nearest cached checkpoint. Only a bounded number of
+ * checkpoints are kept, so memory does not grow with the solution length.
+ */
+final class StepCache {
+
+    private static final int CHECKPOINT_INTERVAL = 32;
+    private static final int MAX_CHECKPOINTS = 16;
+
+    private final SolverStream.Result solution;
+    private final Map<Integer, char[][]> checkpoints = new LinkedHashMap<>(MAX_CHECKPOINTS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, char[][]> eldest) {
+            return size() > MAX_CHECKPOINTS;
+        }
+    };
+
+    private char[][] current;
+    private int currentStep;
+
+    StepCache(SolverStream.Result solution) {
+        this.solution = solution;
+        this.current = copy(solution.initial);
+        this.currentStep = 0;
+    }
+
+    int size() {
+        return solution.moves.size() + 1;
+    }
+
+    /** Board after {@code step} moves. The returned array is shared; do not modify it. */
+    char[][] boardAt(int step) {
+        if (step < 0 || step >= size())
+            throw new IndexOutOfBoundsException(step);
+
+        if (Math.abs(step - currentStep) > CHECKPOINT_INTERVAL) {
+            // jump: restart from the closest checkpoint at or below the target
+            int base = 0;
+            char[][] from = solution.initial;
+            for (int c = step / CHECKPOINT_INTERVAL * CHECKPOINT_INTERVAL; c > 0; c -= CHECKPOINT_INTERVAL) {
+                char[][] cached = checkpoints.get(c);
+                if (cached != null) {
+                    base = c;
+                    from = cached;
+                    break;
+                }
+            }
+            current = copy(from);
+            currentStep = base;
+        }
+
+        while (currentStep < step) {
+            SolverStream.apply(current, solution.moves.get(currentStep));
+            currentStep++;
+            if (currentStep % CHECKPOINT_INTERVAL == 0 && !checkpoints.containsKey(currentStep))
+                checkpoints.put(currentStep, copy(current));
+        }
+        while (currentStep > step) {
+            currentStep--;
+            SolverStream.apply(current, inverse(solution.moves.get(currentStep)));
+        }
+        return current;
+    }
+
+    static SolverStream.Move inverse(SolverStream.Move move) {
+        char opposite = switch (move.direction()) {
+            case 'U' -> 'D';
+            case 'D' -> 'U';
+            case 'L' -> 'R';
+            default -> 'L';
+        };
+        return new SolverStream.Move(move.piece(), opposite, move.distance());
+    }
+
+    private static char[][] copy(char[][] board) {
+        char[][] copy = new char[board.length][];
+        for (int i = 0; i < board.length; i++)
+            copy[i] = board[i].clone();
+        return copy;
+    }
+}
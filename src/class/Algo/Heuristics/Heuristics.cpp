@@ -1,12 +1,150 @@
 #include "Heuristics.hpp"
+#include "../StateSpace/StateSpace.hpp"
 
-int Heuristics::DUMBASS(Board &board)
+#include <algorithm>
+#include <cstdlib>
+#include <filesystem>
+#include <list>
+#include <mutex>
+#include <stdexcept>
+#include <system_error>
+#include <thread>
+#include <unordered_map>
+
+namespace
+{
+    // the most recently used tables by path, most recent first; past LIMIT the least
+    // recently used one is unmapped (once no heuristic holds it any more)
+    template <typename Table, std::size_t LIMIT>
+    class Loaded
+    {
+    private:
+        using Entry = std::pair<std::string, std::shared_ptr<const Table>>;
+        std::list<Entry> recent;
+        std::unordered_map<std::string, typename std::list<Entry>::iterator> index;
+
+    public:
+        std::shared_ptr<const Table> Find(const std::string &path)
+        {
+            auto found = this->index.find(path);
+            if (found == this->index.end())
+                return nullptr;
+            this->recent.splice(this->recent.begin(), this->recent, found->second);
+            return found->second->second;
+        }
+
+        void Add(const std::string &path, std::shared_ptr<const Table> table)
+        {
+            this->recent.emplace_front(path, std::move(table));
+            this->index[path] = this->recent.begin();
+            if (this->recent.size() > LIMIT)
+            {
+                this->index.erase(this->recent.back().first);
+                this->recent.pop_back();
+            }
+        }
+    };
+}
+
+const std::vector<Heuristics::Entry> &Heuristics::Registry()
+{
+    static const std::vector<Entry> entries = {
+        {"DUMBASS", &Heuristics::DUMBASS, "vertical pieces between P and the exit"},
+        {"LAZY", &Heuristics::LAZY, "cells between P and the exit (not admissible)"},
+        {"BLOCKERS", &Heuristics::BLOCKERS, "pieces certain to move, following what blocks the blockers"},
+        {"PDB", &Heuristics::PDB, "pattern database over P and the pieces nearest its row"},
+        {"TABLE", &Heuristics::TABLE, "exact distance from the full state-space table (perfect, slow to build)"},
+        {"ZERO", &Heuristics::ZERO, "always 0 (uniform cost search)"},
+    };
+    return entries;
+}
+
+Heuristics::Heuristics(const std::string &type)
+{
+    std::string spec;
+    for (char c : type)
+    {
+        if (c != ' ')
+            spec += c;
+    }
+    if (spec.empty())
+        spec = "DUMBASS";
+
+    std::size_t at = 0;
+    *this = Heuristics(spec, at);
+    if (at != spec.size())
+        throw std::invalid_argument("Unexpected '" + spec.substr(at) + "' in heuristic " + spec);
+}
+
+Heuristics::Heuristics(const std::string &spec, std::size_t &at)
+{
+    std::size_t start = at;
+    while (at < spec.size() && spec[at] != '(' && spec[at] != ',' && spec[at] != ')')
+        at++;
+    std::string name = spec.substr(start, at - start);
+
+    auto expect = [&](char c)
+    {
+        if (at >= spec.size() || spec[at] != c)
+            throw std::invalid_argument(std::string("Expected '") + c + "' in heuristic " + spec);
+        at++;
+    };
+
+    this->weight = 1;
+    if (name == "MAX")
+    {
+        this->evaluate = &Heuristics::MAX;
+        expect('(');
+        this->parts.push_back(Heuristics(spec, at));
+        while (at < spec.size() && spec[at] == ',')
+        {
+            at++;
+            this->parts.push_back(Heuristics(spec, at));
+        }
+        expect(')');
+    }
+    else if (name == "WEIGHTED")
+    {
+        this->evaluate = &Heuristics::WEIGHTED;
+        expect('(');
+        std::size_t number = at;
+        while (at < spec.size() && spec[at] != ',')
+            at++;
+        try
+        {
+            this->weight = std::stod(spec.substr(number, at - number));
+        }
+        catch (const std::exception &)
+        {
+            throw std::invalid_argument("Bad weight in heuristic " + spec);
+        }
+        expect(',');
+        this->parts.push_back(Heuristics(spec, at));
+        expect(')');
+    }
+    else
+    {
+        auto entry = std::find_if(Registry().begin(), Registry().end(), [&](const Entry &entry)
+                                  { return name == entry.name; });
+        if (entry == Registry().end())
+            throw std::invalid_argument("Unknown heuristic " + name);
+        this->evaluate = entry->evaluate;
+    }
+    this->type = spec.substr(start, at - start);
+}
+
+int Heuristics::ZERO(const Board &)
+{
+    return 0;
+}
+
+int Heuristics::DUMBASS(const Board &board)
 {
     if (board.IsSolved())
         return 0;
 
     const auto &pieces = board.Pieces;
-    const Piece &primary = pieces.at('P');
+    const Piece &primary = pieces[board.PRIMARY];
 
     int row = primary.pos.first;
     int colStart = primary.pos.second;
@@ -14,9 +152,9 @@ int Heuristics::DUMBASS(Board &board)
 
     int blockingCells = 0;
     // Check for vertical pieces that block the path to the exit
-    for (const auto &[id, piece] : pieces)
+    for (const Piece &piece : pieces)
     {
-        if (id == 'P')
+        if (piece.id == 'P')
             continue;
         if (piece.isVertical)
         {
@@ -32,20 +170,237 @@ int Heuristics::DUMBASS(Board &board)
     return blockingCells;
 }
 
-int Heuristics::LAZY(Board &board)
+int Heuristics::LAZY(const Board &board)
 {
-    Piece primary = board.Pieces.at('P');
+    const Piece &primary = board.Pieces[board.PRIMARY];
     return board.M - (primary.pos.second + primary.length) - 1;
 }
 
-int Heuristics::calculate(Board &board)
+// Pieces crossing cells from..to of piece's line, each with the cells it must leave
+void Heuristics::Sweep(const Board &board, int piece, int from, int to, std::vector<Vacate> &out) const
+{
+    const Piece &mover = board.Pieces[piece];
+    out.clear();
+    for (int k = from; k <= to; k++)
+    {
+        int r = mover.isVertical ? k : mover.pos.first;
+        int c = mover.isVertical ? mover.pos.second : k;
+        int other = this->owner[r * board.M + c];
+        if (other < 0 || other == piece || (!out.empty() && out.back().piece == other))
+            continue;
+
+        // a crossing piece leaves one cell of its line, a parallel one the whole stretch
+        const Piece &blocker = board.Pieces[other];
+        if (blocker.isVertical == mover.isVertical)
+            out.push_back({other, from, to});
+        else
+        {
+            int cross = mover.isVertical ? mover.pos.second : mover.pos.first;
+            out.push_back({other, cross, cross});
+        }
+    }
+}
+
+int Heuristics::BLOCKERS(const Board &board)
 {
-    if (this->type == "DUMBASS")
-        return DUMBASS(board);
-    if (this->type == "LAZY")
-        return LAZY(board);
-    if (this->type == "UCS")
+    if (board.IsSolved())
         return 0;
 
-    return DUMBASS(board);
+    const auto &pieces = board.Pieces;
+    this->owner.assign(board.N * board.M, -1);
+    for (std::size_t i = 0; i < pieces.size(); i++)
+    {
+        for (int k = 0; k < pieces[i].length; k++)
+        {
+            int r = pieces[i].pos.first + (pieces[i].isVertical ? k : 0);
+            int c = pieces[i].pos.second + (pieces[i].isVertical ? 0 : k);
+            this->owner[r * board.M + c] = static_cast<int>(i);
+        }
+    }
+
+    this->forced.assign(pieces.size(), false);
+    this->forced[board.PRIMARY] = true;
+    this->forcedOrder.clear();
+
+    // everything between the primary and the exit has to get out of the way
+    const Piece &primary = pieces[board.PRIMARY];
+    Sweep(board, board.PRIMARY, primary.pos.second + primary.length, board.M - 1, this->pending);
+    for (const Vacate &need : this->pending)
+    {
+        this->forced[need.piece] = true;
+        this->forcedOrder.push_back(need.piece);
+    }
+
+    // A piece can clear its cells by sliding back or forward past them. When only
+    // one direction fits on the board, whatever sits on the cells it would slide
+    // into is certain to move too, and so on recursively. With both open nothing
+    // is: the two stretches lie on either side of the piece, so no blocker is in
+    // both, and a perpendicular piece covers one cell of the line.
+    for (std::size_t next = 0; next < this->pending.size(); next++)
+    {
+        Vacate need = this->pending[next];
+        const Piece &piece = pieces[need.piece];
+        int start = piece.isVertical ? piece.pos.first : piece.pos.second;
+        int size = piece.isVertical ? board.N : board.M;
+        bool back = need.from - piece.length >= 0;
+        bool forward = need.to + piece.length <= size - 1;
+        if (back == forward)
+            continue;
+
+        this->swept.clear();
+        if (back)
+            Sweep(board, need.piece, need.from - piece.length, start - 1, this->swept);
+        else
+            Sweep(board, need.piece, start + piece.length, need.to + piece.length, this->swept);
+
+        for (const Vacate &blocker : this->swept)
+        {
+            if (this->forced[blocker.piece])
+                continue;
+            this->forced[blocker.piece] = true;
+            this->forcedOrder.push_back(blocker.piece);
+            this->pending.push_back(blocker);
+        }
+    }
+
+    // each forced piece, and the primary itself, needs at least one move
+    return 1 + static_cast<int>(this->forcedOrder.size());
+}
+
+int Heuristics::MAX(const Board &board)
+{
+    int best = 0;
+    for (Heuristics &part : this->parts)
+        best = std::max(best, part.calculate(board));
+    return best;
+}
+
+int Heuristics::WEIGHTED(const Board &board)
+{
+    return static_cast<int>(this->weight * this->parts[0].calculate(board));
+}
+
+int Heuristics::PDB(const Board &board)
+{
+    if (!this->pdb)
+        Prepare(board);
+    return this->pdb->Lookup(board);
+}
+
+int Heuristics::TABLE(const Board &board)
+{
+    if (!this->table)
+        Prepare(board);
+    int distance = this->table->Lookup(board.Pack());
+    return distance < 0 ? 0 : distance;
+}
+
+void Heuristics::Prepare(const Board &board)
+{
+    for (Heuristics &part : this->parts)
+    {
+        part.CACHE_DIR = this->CACHE_DIR;
+        part.Prepare(board);
+    }
+    if (this->evaluate == &Heuristics::TABLE && !this->table)
+        PrepareTable(board);
+    if (this->evaluate != &Heuristics::PDB || this->pdb)
+        return;
+
+    // the primary, the pieces certain to move from the start, then the pieces nearest
+    // the primary's row, as many as fit in the table
+    BLOCKERS(board);
+    std::vector<int> candidates = this->forcedOrder;
+    std::vector<int> rest;
+    for (std::size_t i = 0; i < board.Pieces.size(); i++)
+    {
+        if (static_cast<int>(i) != board.PRIMARY && (this->forced.empty() || !this->forced[i]))
+            rest.push_back(static_cast<int>(i));
+    }
+    int row = board.Pieces[board.PRIMARY].pos.first;
+    auto distance = [&](int index)
+    {
+        const Piece &piece = board.Pieces[index];
+        if (!piece.isVertical)
+            return std::abs(piece.pos.first - row);
+        int top = piece.pos.first, bottom = top + piece.length - 1;
+        return row < top ? top - row : row > bottom ? row - bottom : 0;
+    };
+    std::stable_sort(rest.begin(), rest.end(), [&](int a, int b)
+                     { return distance(a) < distance(b); });
+    candidates.insert(candidates.end(), rest.begin(), rest.end());
+
+    std::vector<int> pattern = {board.PRIMARY};
+    for (int index : candidates)
+    {
+        pattern.push_back(index);
+        if (PatternDatabase::Entries(board, pattern) > PatternDatabase::MAX_ENTRIES)
+            pattern.pop_back();
+    }
+
+    auto database = std::make_shared<PatternDatabase>(board, pattern);
+    std::string path = this->CACHE_DIR + "/" + database->FileName();
+
+    // recently used tables stay mapped, so a long-running solver does not reload
+    // the geometries it keeps seeing
+    static std::mutex lock;
+    static Loaded<PatternDatabase, MAX_LOADED_PDBS> loaded;
+    std::lock_guard<std::mutex> guard(lock);
+    if (auto found = loaded.Find(path))
+    {
+        this->pdb = found;
+        return;
+    }
+
+    if (!database->Load(path))
+    {
+        database->Build();
+        std::error_code error;
+        std::filesystem::create_directories(this->CACHE_DIR, error);
+        if (database->Save(path))
+            database->Load(path);
+    }
+    loaded.Add(path, database);
+    this->pdb = database;
+}
+
+void Heuristics::PrepareTable(const Board &board)
+{
+    // a table covers the states reachable from the board it was built for, so one
+    // geometry can have several: states-<hash>.bin, states-<hash>-1.bin, ...
+    std::string name = StateSpace::CacheName(board);
+    std::string stem = this->CACHE_DIR + "/" + name.substr(0, name.size() - 4);
+
+    static std::mutex lock;
+    static Loaded<DistanceTable, MAX_LOADED_TABLES> loaded;
+    std::lock_guard<std::mutex> guard(lock);
+    for (int variant = 0;; variant++)
+    {
+        std::string path = stem + (variant == 0 ? "" : "-" + std::to_string(variant)) + ".bin";
+        if (auto found = loaded.Find(path))
+        {
+            if (found->Lookup(board.Pack()) < 0)
+                continue;
+            this->table = found;
+            return;
+        }
+
+        auto table = std::make_shared<DistanceTable>();
+        if (table->Open(path))
+        {
+            if (!table->Matches(board) || table->Lookup(board.Pack()) < 0)
+                continue;
+        }
+        else
+        {
+            std::error_code error;
+            std::filesystem::create_directories(this->CACHE_DIR, error);
+            StateSpace space(board, std::max(1u, std::thread::hardware_concurrency()), std::size_t(256) << 20);
+            if (!space.Write(path) || !table->Open(path))
+                throw std::runtime_error("Cannot write the distance table " + path);
+        }
+        loaded.Add(path, table);
+        this->table = table;
+        return;
+    }
 }
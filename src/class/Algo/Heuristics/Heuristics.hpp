@@ -2,21 +2,70 @@
 #define __HEURISTICS__
 
 #include "../../Board/Board.hpp"
+#include "PatternDatabase.hpp"
+#include "../StateSpace/DistanceTable.hpp"
 
+#include <memory>
 #include <string>
+#include <vector>
 
+// A heuristic resolved once from its name: calculate() is a single call through
+// a member function pointer. Names are the entries of Registry(), or composites
+// MAX(a,b,...) (the largest of several, admissible if they all are) and
+// WEIGHTED(w,a) (floor(w * a), for bounded-suboptimal weighted A*).
 class Heuristics
 {
+public:
+    struct Entry
+    {
+        const char *name;
+        int (Heuristics::*evaluate)(const Board &);
+        const char *description;
+    };
+    static const std::vector<Entry> &Registry(); // every named heuristic
+
 private:
     std::string type;
+    int (Heuristics::*evaluate)(const Board &);
+    std::vector<Heuristics> parts; // operands of MAX / WEIGHTED
+    double weight;
+    std::shared_ptr<const PatternDatabase> pdb; // PDB, shared by every copy once prepared
+    static const std::size_t MAX_LOADED_PDBS = 16; // most recently used tables kept mapped between boards
+    std::shared_ptr<const DistanceTable> table;  // TABLE, likewise
+    static const std::size_t MAX_LOADED_TABLES = 4;
+    void PrepareTable(const Board &board);
+
+    // BLOCKERS scratch: which piece covers each cell, and the pieces proven to move
+    std::vector<int> owner;
+    std::vector<bool> forced;
+    std::vector<int> forcedOrder;
+    struct Vacate
+    {
+        int piece, from, to; // piece has to leave cells from..to of its own line
+    };
+    std::vector<Vacate> pending, swept;
+    void Sweep(const Board &board, int piece, int from, int to, std::vector<Vacate> &out) const;
 
-    int DUMBASS(Board &board);
-    int LAZY(Board &board);
+    Heuristics(const std::string &spec, std::size_t &at); // parse one term of spec starting at at
+
+    int ZERO(const Board &board);
+    int DUMBASS(const Board &board);
+    int LAZY(const Board &board);
+    int BLOCKERS(const Board &board);
+    int PDB(const Board &board);
+    int TABLE(const Board &board);
+    int MAX(const Board &board);
+    int WEIGHTED(const Board &board);
 
 public:
-    Heuristics(std::string type) : type(type) {};
+    std::string CACHE_DIR = "cache"; // where pattern databases and distance tables are kept between runs
+
+    Heuristics(const std::string &type); // throws std::invalid_argument for an unknown name
+
+    void Prepare(const Board &board); // builds or loads what the heuristic needs for this board
+    int calculate(const Board &board) { return (this->*evaluate)(board); }
 
-    int calculate(Board &board);
+    const std::string &Name() const { return type; }
 };
 
-#endif
\ No newline at end of file
+#endif
@@ -0,0 +1,203 @@
+#include "PatternDatabase.hpp"
+
+#include <filesystem>
+#include <fstream>
+#include <system_error>
+
+namespace
+{
+    const char MAGIC[8] = {'R', 'H', 'P', 'D', 'B', '1', '\n', '\0'};
+}
+
+PatternDatabase::PatternDatabase(const Board &board, const std::vector<int> &pattern)
+{
+    this->N = board.N;
+    this->M = board.M;
+    this->indices = pattern;
+    this->entries = 1;
+    for (int index : pattern)
+    {
+        const Piece &piece = board.Pieces[index];
+        int size = piece.isVertical ? this->N : this->M;
+        this->vertical.push_back(piece.isVertical);
+        this->line.push_back(piece.isVertical ? piece.pos.second : piece.pos.first);
+        this->length.push_back(piece.length);
+        this->radix.push_back(this->entries);
+        this->entries *= static_cast<std::size_t>(size - piece.length + 1);
+    }
+    this->table = nullptr;
+}
+
+std::size_t PatternDatabase::Entries(const Board &board, const std::vector<int> &pattern)
+{
+    std::size_t entries = 1;
+    for (int index : pattern)
+    {
+        const Piece &piece = board.Pieces[index];
+        entries *= static_cast<std::size_t>((piece.isVertical ? board.N : board.M) - piece.length + 1);
+    }
+    return entries;
+}
+
+std::vector<std::uint8_t> PatternDatabase::Header() const
+{
+    std::vector<std::uint8_t> header(MAGIC, MAGIC + sizeof(MAGIC));
+    header.push_back(static_cast<std::uint8_t>(this->N));
+    header.push_back(static_cast<std::uint8_t>(this->M));
+    header.push_back(static_cast<std::uint8_t>(this->indices.size()));
+    for (std::size_t i = 0; i < this->indices.size(); i++)
+    {
+        header.push_back(this->vertical[i]);
+        header.push_back(static_cast<std::uint8_t>(this->line[i]));
+        header.push_back(static_cast<std::uint8_t>(this->length[i]));
+    }
+    return header;
+}
+
+std::string PatternDatabase::FileName() const
+{
+    // FNV-1a over the header, which is everything the table depends on
+    std::uint64_t hash = 0xCBF29CE484222325ULL;
+    for (std::uint8_t byte : Header())
+    {
+        hash ^= byte;
+        hash *= 0x100000001B3ULL;
+    }
+
+    static const char DIGITS[] = "0123456789abcdef";
+    std::string name = "pdb-";
+    for (int shift = 60; shift >= 0; shift -= 4)
+        name += DIGITS[(hash >> shift) & 0xF];
+    return name + ".bin";
+}
+
+bool PatternDatabase::Load(const std::string &path)
+{
+    std::vector<std::uint8_t> header = Header();
+    if (!this->file.Open(path) || this->file.Size() != header.size() + this->entries)
+    {
+        this->file.Close();
+        return false;
+    }
+    for (std::size_t i = 0; i < header.size(); i++)
+    {
+        if (this->file.Data()[i] != header[i])
+        {
+            this->file.Close();
+            return false;
+        }
+    }
+    this->table = this->file.Data() + header.size();
+    return true;
+}
+
+bool PatternDatabase::Save(const std::string &path) const
+{
+    // other daemons may have path mapped, so it is replaced whole rather than rewritten
+    std::vector<std::uint8_t> header = Header();
+    std::string partial = MappedFile::Private(path + ".tmp");
+    std::ofstream out(partial, std::ios::binary);
+    out.write(reinterpret_cast<const char *>(header.data()), header.size());
+    out.write(reinterpret_cast<const char *>(this->built.data()), this->built.size());
+    out.close();
+    if (!out)
+    {
+        std::error_code error;
+        std::filesystem::remove(partial, error);
+        return false;
+    }
+    return MappedFile::Replace(partial, path);
+}
+
+bool PatternDatabase::Decode(std::size_t index, std::vector<int> &offsets,
+                             std::vector<std::uint64_t> &rows, std::vector<std::uint64_t> &cols) const
+{
+    rows.assign(this->N, 0);
+    cols.assign(this->M, 0);
+    for (std::size_t i = 0; i < this->indices.size(); i++)
+    {
+        int size = this->vertical[i] ? this->N : this->M;
+        offsets[i] = static_cast<int>(index % static_cast<std::size_t>(size - this->length[i] + 1));
+        index /= static_cast<std::size_t>(size - this->length[i] + 1);
+
+        for (int k = 0; k < this->length[i]; k++)
+        {
+            int r = this->vertical[i] ? offsets[i] + k : this->line[i];
+            int c = this->vertical[i] ? this->line[i] : offsets[i] + k;
+            if (rows[r] >> c & 1)
+                return false;
+            rows[r] |= 1ULL << c;
+            cols[c] |= 1ULL << r;
+        }
+    }
+    return true;
+}
+
+void PatternDatabase::Build()
+{
+    this->built.assign(this->entries, UNREACHABLE);
+    this->file.Close();
+
+    std::vector<int> offsets(this->indices.size());
+    std::vector<std::uint64_t> rows, cols;
+    std::vector<std::uint32_t> frontier, next;
+
+    // every placement of the other pieces around a finished primary is a goal
+    int goal = this->M - this->length[0];
+    for (std::size_t index = 0; index < this->entries; index++)
+    {
+        if (Decode(index, offsets, rows, cols) && offsets[0] == goal)
+        {
+            this->built[index] = 0;
+            frontier.push_back(static_cast<std::uint32_t>(index));
+        }
+    }
+
+    // slides are reversible, so searching forward from the goals gives distances to them
+    for (int depth = 1; !frontier.empty() && depth < UNREACHABLE; depth++)
+    {
+        next.clear();
+        for (std::uint32_t index : frontier)
+        {
+            Decode(index, offsets, rows, cols);
+            for (std::size_t i = 0; i < this->indices.size(); i++)
+            {
+                std::uint64_t bits = this->vertical[i] ? cols[this->line[i]] : rows[this->line[i]];
+                int start = offsets[i], end = start + this->length[i];
+                int size = this->vertical[i] ? this->N : this->M;
+
+                for (int to = start - 1; to >= 0 && !(bits >> to & 1); to--)
+                {
+                    std::size_t child = index - static_cast<std::size_t>(start - to) * this->radix[i];
+                    if (this->built[child] == UNREACHABLE)
+                    {
+                        this->built[child] = static_cast<std::uint8_t>(depth);
+                        next.push_back(static_cast<std::uint32_t>(child));
+                    }
+                }
+                for (int to = end; to < size && !(bits >> to & 1); to++)
+                {
+                    std::size_t child = index + static_cast<std::size_t>(to - end + 1) * this->radix[i];
+                    if (this->built[child] == UNREACHABLE)
+                    {
+                        this->built[child] = static_cast<std::uint8_t>(depth);
+                        next.push_back(static_cast<std::uint32_t>(child));
+                    }
+                }
+            }
+        }
+        frontier.swap(next);
+    }
+    this->table = this->built.data();
+}
+
+int PatternDatabase::Lookup(const Board &board) const
+{
+    std::size_t index = 0;
+    for (std::size_t i = 0; i < this->indices.size(); i++)
+    {
+        const Piece &piece = board.Pieces[this->indices[i]];
+        index += static_cast<std::size_t>(piece.isVertical ? piece.pos.first : piece.pos.second) * this->radix[i];
+    }
+    return this->table[index];
+}
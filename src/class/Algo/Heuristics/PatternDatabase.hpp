@@ -0,0 +1,51 @@
+#ifndef __PATTERNDATABASE__
+#define __PATTERNDATABASE__
+
+#include "../../Board/Board.hpp"
+#include "../../Storage/MappedFile.hpp"
+
+#include <cstddef>
+#include <cstdint>
+#include <string>
+#include <vector>
+
+// Exact move counts to the goal in an abstraction of the board that keeps only
+// a few pieces (the primary first). Leaving pieces out only removes obstacles,
+// so every entry is a lower bound for the full board. Tables depend only on the
+// geometry of the kept pieces and are cached in files that later runs map.
+class PatternDatabase
+{
+public:
+    static constexpr std::uint8_t UNREACHABLE = 255;
+    static constexpr std::size_t MAX_ENTRIES = std::size_t(1) << 22;
+
+    // pattern holds indices into board.Pieces; pattern[0] must be the primary piece
+    PatternDatabase(const Board &board, const std::vector<int> &pattern);
+
+    static std::size_t Entries(const Board &board, const std::vector<int> &pattern); // table size for a pattern
+
+    bool Load(const std::string &path);       // map a cached table; false if missing or built for other pieces
+    void Build();                             // breadth-first search back from every abstract goal
+    bool Save(const std::string &path) const; // write the built table for later runs
+    std::string FileName() const;             // cache file name, derived from the pattern geometry
+
+    int Lookup(const Board &board) const; // moves to the goal of the abstract board
+
+private:
+    int N, M;
+    std::vector<int> indices;        // pattern pieces in Board::Pieces
+    std::vector<bool> vertical;      // per pattern piece
+    std::vector<int> line, length;   // fixed coordinate and length of each piece
+    std::vector<std::size_t> radix;  // index = sum of offset * radix
+    std::size_t entries;
+
+    std::vector<std::uint8_t> built; // table after Build()
+    MappedFile file;                 // table after Load()
+    const std::uint8_t *table;
+
+    std::vector<std::uint8_t> Header() const;
+    bool Decode(std::size_t index, std::vector<int> &offsets,
+                std::vector<std::uint64_t> &rows, std::vector<std::uint64_t> &cols) const; // false if pieces overlap
+};
+
+#endif
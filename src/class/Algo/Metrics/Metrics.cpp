@@ -0,0 +1,70 @@
+#include "Metrics.hpp"
+
+#include <iomanip>
+#include <sstream>
+
+#ifdef _WIN32
+#define PSAPI_VERSION 2 // GetProcessMemoryInfo from kernel32, no extra library
+#include <windows.h>
+#include <psapi.h>
+#else
+#include <sys/resource.h>
+#endif
+
+void Metrics::Merge(const Metrics &other)
+{
+    expanded += other.expanded;
+    generated += other.generated;
+    duplicates += other.duplicates;
+    reopened += other.reopened;
+    stale += other.stale;
+    open += other.open;
+    openPeak += other.openPeak;
+    closed += other.closed;
+    closedPeak += other.closedPeak;
+    bytes += other.bytes;
+    bytesPeak += other.bytesPeak;
+    for (int phase = 0; phase < PHASES; phase++)
+        phaseNs[phase] += other.phaseNs[phase];
+}
+
+std::string Metrics::Json(long long elapsed) const
+{
+    std::ostringstream out;
+    out << "{\"ms\":" << elapsed
+        << ",\"expanded\":" << expanded
+        << ",\"generated\":" << generated
+        << ",\"duplicates\":" << duplicates
+        << ",\"reopened\":" << reopened
+        << ",\"stale\":" << stale
+        << ",\"open\":" << open
+        << ",\"openPeak\":" << openPeak
+        << ",\"closed\":" << closed
+        << ",\"closedPeak\":" << closedPeak
+        << ",\"bytes\":" << bytes
+        << ",\"bytesPeak\":" << bytesPeak
+        << std::fixed << std::setprecision(3);
+    for (int phase = 0; phase < PHASES; phase++)
+        out << ",\"" << PHASE_NAMES[phase] << "Ms\":" << phaseNs[phase] / 1e6;
+    out << ",\"rssPeakKB\":" << PeakMemoryKB() << "}";
+    return out.str();
+}
+
+long long Metrics::PeakMemoryKB()
+{
+#ifdef _WIN32
+    PROCESS_MEMORY_COUNTERS counters;
+    if (!GetProcessMemoryInfo(GetCurrentProcess(), &counters, sizeof(counters)))
+        return 0;
+    return static_cast<long long>(counters.PeakWorkingSetSize / 1024);
+#else
+    struct rusage usage;
+    if (getrusage(RUSAGE_SELF, &usage) != 0)
+        return 0;
+#ifdef __APPLE__
+    return usage.ru_maxrss / 1024; // bytes there
+#else
+    return usage.ru_maxrss;
+#endif
+#endif
+}
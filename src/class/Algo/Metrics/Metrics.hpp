@@ -0,0 +1,91 @@
+#ifndef __METRICS__
+#define __METRICS__
+
+#include <algorithm>
+#include <chrono>
+#include <cstddef>
+#include <string>
+
+// Hot-path counters and per-phase timers for the solvers. They are only collected
+// when the build defines RH_METRICS (make METRICS=1): otherwise every METRIC_*
+// macro below expands to nothing, its arguments included, and the solvers hand
+// no Metrics to their progress listeners. When collected, every timed call reads
+// the clock twice, which roughly doubles the cost of an expansion.
+struct Metrics
+{
+#ifdef RH_METRICS
+    static constexpr bool ENABLED = true;
+#else
+    static constexpr bool ENABLED = false;
+#endif
+
+    // where expansion time goes
+    enum Phase
+    {
+        LOAD,      // unpacking a key into the board
+        GENERATE,  // listing the legal moves
+        HASH,      // packing successors and probing the seen / closed table
+        HEURISTIC, // h of successors
+        QUEUE,     // open-set pushes and pops
+        PHASES
+    };
+    static constexpr const char *PHASE_NAMES[PHASES] = {"load", "generate", "hash", "heuristic", "queue"};
+
+    long long expanded = 0;   // nodes expanded
+    long long generated = 0;  // successors produced
+    long long duplicates = 0; // successors dropped: already seen at least as cheaply
+    long long reopened = 0;   // successors that improved a state already seen
+    long long stale = 0;      // open entries skipped because their node improved after the push
+    std::size_t open = 0, openPeak = 0;     // open set (IDA*: stack depth)
+    std::size_t closed = 0, closedPeak = 0; // states stored
+    std::size_t bytes = 0, bytesPeak = 0;   // search structures (arena, open set, tables)
+    long long phaseNs[PHASES] = {};
+
+    // scopes one phase
+    class Timer
+    {
+    private:
+        long long &into;
+        std::chrono::steady_clock::time_point start;
+
+    public:
+        Timer(Metrics &metrics, Phase phase) : into(metrics.phaseNs[phase]), start(std::chrono::steady_clock::now()) {};
+        ~Timer() { into += std::chrono::duration_cast<std::chrono::nanoseconds>(std::chrono::steady_clock::now() - start).count(); }
+    };
+
+    template <typename F>
+    decltype(auto) Timed(Phase phase, F &&work)
+    {
+        Timer timer(*this, phase);
+        return work();
+    }
+
+    void Sizes(std::size_t open, std::size_t closed, std::size_t bytes)
+    {
+        this->open = open;
+        this->closed = closed;
+        this->bytes = bytes;
+        openPeak = std::max(openPeak, open);
+        closedPeak = std::max(closedPeak, closed);
+        bytesPeak = std::max(bytesPeak, bytes);
+    }
+
+    void Merge(const Metrics &other); // add another worker's counts; sizes and peaks add up too
+
+    // one flat JSON object on one line, e.g. {"ms":120,"expanded":5000,...,"hashMs":1.2,...,"rssPeakKB":9000}
+    std::string Json(long long elapsed) const;
+
+    static long long PeakMemoryKB(); // high-water resident set of this process
+};
+
+#ifdef RH_METRICS
+#define METRIC_ADD(metrics, counter, n) ((metrics).counter += (n))
+#define METRIC_SIZES(metrics, open, closed, bytes) (metrics).Sizes((open), (closed), (bytes))
+#define METRIC_TIMED(metrics, phase, ...) (metrics).Timed(Metrics::phase, [&]() -> decltype(auto) { return __VA_ARGS__; })
+#else
+#define METRIC_ADD(metrics, counter, n) ((void)0)
+#define METRIC_SIZES(metrics, open, closed, bytes) ((void)0)
+#define METRIC_TIMED(metrics, phase, ...) (__VA_ARGS__)
+#endif
+
+#endif
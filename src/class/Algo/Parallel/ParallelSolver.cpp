@@ -0,0 +1,296 @@
+#include "ParallelSolver.hpp"
+
+#include <algorithm>
+#include <chrono>
+#include <climits>
+#include <queue>
+#include <thread>
+
+struct ParallelSolver::Worker
+{
+    Board board;
+    Heuristics H;
+    StateTable best; // owned state -> node holding its best g so far
+    std::vector<Node> nodes;
+    std::priority_queue<OpenEntry, std::vector<OpenEntry>, std::greater<OpenEntry>> open;
+    Inbox inbox;
+    std::vector<std::vector<Message>> outbox; // per destination worker
+    std::vector<Move> moves;
+    std::atomic<int> expanded{0};
+    std::atomic<std::size_t> openSize{0};
+    bool idle = false;
+    Metrics metrics; // this worker's share, merged into METRICS at the end
+
+    Worker(const Board &board, const Heuristics &H, int threads)
+        : board(board), H(H), best(board.KEY_WORDS), outbox(threads) {}
+};
+
+ParallelSolver::Inbox::~Inbox()
+{
+    // only once every producer has stopped, so no Push is halfway through
+    while (Batch *batch = Pop())
+        delete batch;
+}
+
+void ParallelSolver::Inbox::Push(Batch *batch)
+{
+    batch->next.store(nullptr, std::memory_order_relaxed);
+    Batch *previous = head.exchange(batch, std::memory_order_acq_rel);
+    previous->next.store(batch, std::memory_order_release);
+}
+
+ParallelSolver::Batch *ParallelSolver::Inbox::Pop()
+{
+    Batch *first = tail;
+    Batch *next = first->next.load(std::memory_order_acquire);
+    if (first == &stub)
+    {
+        if (next == nullptr)
+            return nullptr;
+        tail = next;
+        first = next;
+        next = next->next.load(std::memory_order_acquire);
+    }
+    if (next != nullptr)
+    {
+        tail = next;
+        return first;
+    }
+    if (first != head.load(std::memory_order_acquire))
+        return nullptr; // a producer is halfway through Push; try again later
+
+    Push(&stub);
+    next = first->next.load(std::memory_order_acquire);
+    if (next != nullptr)
+    {
+        tail = next;
+        return first;
+    }
+    return nullptr;
+}
+
+ParallelSolver::ParallelSolver(Board board, Heuristics H, int threads)
+    : INITIAL(board), H(H), THREADS(std::max(1, std::min(threads, 1 << 15))), VISITED_NODES(0)
+{
+}
+
+ParallelSolver::~ParallelSolver() = default;
+
+int ParallelSolver::Owner(const StateKey &key) const
+{
+    // the tables index with the low hash bits, so shard on the high ones
+    return static_cast<int>((key.Hash() >> 32) % static_cast<std::uint64_t>(THREADS));
+}
+
+void ParallelSolver::Receive(Worker &self, const Message &message)
+{
+    auto [slot, inserted] = METRIC_TIMED(self.metrics, HASH, self.best.Emplace(message.key, static_cast<std::uint32_t>(self.nodes.size())));
+    if (inserted)
+        self.nodes.push_back({message.key, message.parent, message.parentOwner, message.move, message.g});
+    else if (message.g < self.nodes[*slot].g)
+    {
+        METRIC_ADD(self.metrics, reopened, 1);
+        self.nodes[*slot] = {message.key, message.parent, message.parentOwner, message.move, message.g}; // reopen
+    }
+    else
+    {
+        METRIC_ADD(self.metrics, duplicates, 1);
+        return;
+    }
+    METRIC_TIMED(self.metrics, QUEUE, self.open.push({message.g + message.h, -message.g, message.g, *slot}));
+}
+
+void ParallelSolver::Flush(Worker &self, int to)
+{
+    Batch *batch = new Batch();
+    batch->messages.swap(self.outbox[to]);
+    sent.fetch_add(static_cast<long long>(batch->messages.size()));
+    workers[to]->inbox.Push(batch);
+}
+
+bool ParallelSolver::Terminated()
+{
+    // Every worker idle, every message ever sent received, and nothing sent while we looked.
+    // Workers leave idle before counting a batch as received, so a worker woken by the
+    // last batch can never be counted as idle here.
+    long long before = sent.load();
+    long long got = received.load();
+    int idleWorkers = idle.load();
+    long long after = sent.load();
+    return idleWorkers == THREADS && got == before && before == after;
+}
+
+void ParallelSolver::Run(int id)
+{
+    Worker &self = *workers[id];
+    auto startTime = std::chrono::steady_clock::now();
+    auto lastReport = startTime;
+    int loops = 0;
+
+    while (!done.load())
+    {
+        // 1. take in successors routed to us
+        while (Batch *batch = self.inbox.Pop())
+        {
+            if (self.idle)
+            {
+                self.idle = false;
+                idle.fetch_sub(1);
+            }
+            for (const Message &message : batch->messages)
+                Receive(self, message);
+            received.fetch_add(static_cast<long long>(batch->messages.size()));
+            delete batch;
+        }
+
+        // 2. expand a few of our best nodes
+        int bound = 0;
+        for (int budget = 32; budget > 0 && !self.open.empty(); budget--)
+        {
+            OpenEntry top = self.open.top();
+            if (top.f >= incumbent.load())
+            {
+                self.open = {}; // nothing left here can beat the incumbent
+                break;
+            }
+            METRIC_TIMED(self.metrics, QUEUE, self.open.pop());
+            if (top.g != self.nodes[top.node].g)
+            {
+                METRIC_ADD(self.metrics, stale, 1);
+                continue; // stale entry
+            }
+            bound = top.f;
+
+            METRIC_TIMED(self.metrics, LOAD, self.board.Load(self.nodes[top.node].key));
+            self.expanded.fetch_add(1, std::memory_order_relaxed);
+            METRIC_ADD(self.metrics, expanded, 1);
+
+            if (self.board.IsSolved())
+            {
+                std::lock_guard<std::mutex> lock(goalLock);
+                if (top.g < incumbent.load())
+                {
+                    incumbent.store(top.g);
+                    goalOwner = id;
+                    goalNode = top.node;
+                }
+                continue;
+            }
+
+            METRIC_TIMED(self.metrics, GENERATE, self.board.GenerateMoves(self.moves));
+            METRIC_ADD(self.metrics, generated, self.moves.size());
+            for (const Move &move : self.moves)
+            {
+                self.board.Apply(move);
+                int g = top.g + Cost(COST, move);
+                int h = METRIC_TIMED(self.metrics, HEURISTIC, self.H.calculate(self.board));
+                if (g + h < incumbent.load(std::memory_order_relaxed))
+                {
+                    Message message{METRIC_TIMED(self.metrics, HASH, self.board.Pack()), top.node, static_cast<std::uint16_t>(id), move, g, h};
+                    int owner = Owner(message.key);
+                    if (owner == id)
+                        Receive(self, message);
+                    else
+                        self.outbox[owner].push_back(message);
+                }
+                self.board.Undo(move);
+            }
+        }
+        self.openSize.store(self.open.size(), std::memory_order_relaxed);
+        METRIC_SIZES(self.metrics, self.open.size(), self.best.Size(),
+                     self.nodes.capacity() * sizeof(Node) + self.open.size() * sizeof(OpenEntry) + self.best.Bytes());
+
+        // 3. hand over everything generated this round
+        for (int to = 0; to < THREADS; to++)
+        {
+            if (!self.outbox[to].empty())
+                Flush(self, to);
+        }
+
+        // 4. go idle, and let worker 0 decide when everyone is
+        if (self.open.empty())
+        {
+            if (!self.idle)
+            {
+                self.idle = true;
+                idle.fetch_add(1);
+            }
+            if (id == 0 && Terminated())
+                done.store(true);
+            else
+                std::this_thread::yield();
+        }
+
+        if (id == 0 && OnProgress && (++loops & 63) == 0)
+        {
+            auto now = std::chrono::steady_clock::now();
+            if (now - lastReport >= std::chrono::milliseconds(PROGRESS_INTERVAL))
+            {
+                lastReport = now;
+                int expanded = 0;
+                std::size_t open = 0;
+                for (const auto &worker : workers)
+                {
+                    expanded += worker->expanded.load(std::memory_order_relaxed);
+                    open += worker->openSize.load(std::memory_order_relaxed);
+                }
+                auto elapsed = std::chrono::duration_cast<std::chrono::milliseconds>(now - startTime);
+                if (!OnProgress({expanded, open, bound, elapsed.count()}))
+                {
+                    CANCELLED = true;
+                    done.store(true);
+                }
+            }
+        }
+    }
+}
+
+std::vector<Move> ParallelSolver::Trace(int owner, std::uint32_t node) const
+{
+    std::vector<Move> moves;
+    while (true)
+    {
+        const Node &current = workers[owner]->nodes[node];
+        if (current.parent == UINT32_MAX)
+            break;
+        moves.push_back(current.move);
+        owner = current.parentOwner;
+        node = current.parent;
+    }
+    std::reverse(moves.begin(), moves.end());
+    return moves;
+}
+
+std::optional<std::vector<Move>> ParallelSolver::Solve()
+{
+    workers.clear();
+    for (int i = 0; i < THREADS; i++)
+        workers.push_back(std::make_unique<Worker>(INITIAL, H, THREADS));
+    incumbent.store(INT_MAX);
+    sent.store(0);
+    received.store(0);
+    idle.store(0);
+    done.store(false);
+    CANCELLED = false;
+
+    Message root{INITIAL.Pack(), UINT32_MAX, 0, {}, 0, H.calculate(INITIAL)};
+    Receive(*workers[Owner(root.key)], root);
+
+    std::vector<std::thread> threads;
+    for (int i = 0; i < THREADS; i++)
+        threads.emplace_back(&ParallelSolver::Run, this, i);
+    for (std::thread &thread : threads)
+        thread.join();
+
+    this->VISITED_NODES = 0;
+    this->METRICS = Metrics();
+    for (const auto &worker : workers)
+    {
+        this->VISITED_NODES += worker->expanded.load();
+        this->METRICS.Merge(worker->metrics);
+    }
+
+    if (CANCELLED || incumbent.load() == INT_MAX)
+        return std::nullopt; // stopped, or no solution found
+    return Trace(goalOwner, goalNode);
+}
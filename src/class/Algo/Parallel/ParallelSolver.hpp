@@ -0,0 +1,115 @@
+#ifndef __PARALLELSOLVER__
+#define __PARALLELSOLVER__
+
+#include "../../Board/Board.hpp"
+#include "../../Board/Cost.hpp"
+#include "../Heuristics/Heuristics.hpp"
+#include "../Solver/Solver.hpp"
+#include "../StateTable/StateTable.hpp"
+
+#include <atomic>
+#include <cstdint>
+#include <functional>
+#include <memory>
+#include <mutex>
+#include <optional>
+#include <vector>
+
+// Hash-distributed A* (HDA*): every state has one owner thread, chosen by its
+// hash. A thread keeps the open list and closed table for the states it owns
+// and routes every successor it generates to that successor's owner through
+// a lock-free inbox. With an admissible heuristic (or none, for UCS) the
+// search keeps going after the first goal until no open node anywhere can
+// beat it, so the returned path is optimal.
+class ParallelSolver
+{
+private:
+    // successor on its way to its owner
+    struct Message
+    {
+        StateKey key;
+        std::uint32_t parent; // node index inside the parent's owner
+        std::uint16_t parentOwner;
+        Move move;
+        int g, h;
+    };
+
+    // messages travel in batches through a Vyukov multi-producer single-consumer queue
+    struct Batch
+    {
+        std::atomic<Batch *> next{nullptr};
+        std::vector<Message> messages;
+    };
+
+    class Inbox
+    {
+    private:
+        std::atomic<Batch *> head;
+        Batch *tail;
+        Batch stub;
+
+    public:
+        Inbox() : head(&stub), tail(&stub) {};
+        ~Inbox();                // frees batches left over when a search stopped early
+        void Push(Batch *batch); // any thread
+        Batch *Pop();            // owner only; nullptr when empty
+    };
+
+    struct Node
+    {
+        StateKey key;
+        std::uint32_t parent;
+        std::uint16_t parentOwner;
+        Move move;
+        int g;
+    };
+
+    struct OpenEntry
+    {
+        int f, tie, g;
+        std::uint32_t node;
+
+        bool operator>(const OpenEntry &other) const
+        {
+            return f != other.f ? f > other.f : tie > other.tie;
+        }
+    };
+
+    struct Worker;
+
+    Board INITIAL;
+    Heuristics H;
+    int THREADS;
+
+    std::vector<std::unique_ptr<Worker>> workers;
+    std::atomic<int> incumbent;            // cost of the best solution found so far
+    std::atomic<long long> sent, received; // messages, for termination detection
+    std::atomic<int> idle;                 // workers with nothing left to do
+    std::atomic<bool> done;
+    std::mutex goalLock;
+    int goalOwner;
+    std::uint32_t goalNode;
+
+    int Owner(const StateKey &key) const;
+    void Run(int id);
+    void Receive(Worker &self, const Message &message);
+    void Flush(Worker &self, int to);
+    bool Terminated();
+    std::vector<Move> Trace(int owner, std::uint32_t node) const;
+
+public:
+    int VISITED_NODES;
+    Metrics METRICS; // every worker's counters summed, once the last search is over (progress reports carry none)
+
+    std::function<bool(const SearchProgress &)> OnProgress; // called from one worker only; false stops the search
+    int PROGRESS_INTERVAL = 100;                             // milliseconds between reports
+    bool CANCELLED = false;                                  // the last search was stopped by OnProgress
+    CostModel COST = CostModel::MOVES;                       // what each slide costs (see Cost.hpp)
+
+    ParallelSolver(Board board, Heuristics H, int threads);
+    ~ParallelSolver();
+
+    std::optional<std::vector<Move>> Solve(); // parallel A* / UCS
+};
+
+#endif
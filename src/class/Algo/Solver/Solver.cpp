@@ -1,238 +1,661 @@
 #include "Solver.hpp"
+#include "../StateTable/StateTable.hpp"
 
 #include <queue>
 #include <vector>
-#include <memory>
-#include <unordered_set>
 #include <algorithm>
-#include <iostream>
+#include <climits>
+#include <cstdlib>
 #include <functional>
 
-std::vector<Board> Solver::SolveComplete()
+void Solver::StartClock()
 {
-    auto cmp = [](const std::shared_ptr<Node> &a, const std::shared_ptr<Node> &b)
+    this->startTime = std::chrono::steady_clock::now();
+    this->lastReport = this->startTime;
+    this->CANCELLED = false;
+    this->PEAK_OPEN = 0;
+    this->METRICS = Metrics();
+}
+
+bool Solver::Expanded(std::size_t open, int bound)
+{
+    this->VISITED_NODES++;
+    this->PEAK_OPEN = std::max(this->PEAK_OPEN, open);
+    METRIC_ADD(METRICS, expanded, 1);
+    if (this->NODE_LIMIT > 0 && this->VISITED_NODES >= this->NODE_LIMIT)
     {
-        return a->f > b->f; // Min-heap
-    };
+        this->CANCELLED = true;
+        return false;
+    }
+    if (!this->OnProgress || (this->VISITED_NODES & 255) != 0)
+        return true; // only look at the clock every 256 expansions
+
+    auto now = std::chrono::steady_clock::now();
+    if (now - this->lastReport < std::chrono::milliseconds(PROGRESS_INTERVAL))
+        return true;
+    this->lastReport = now;
+
+    auto elapsed = std::chrono::duration_cast<std::chrono::milliseconds>(now - this->startTime);
+    this->CANCELLED = !this->OnProgress({this->VISITED_NODES, open, bound, elapsed.count(),
+                                         Metrics::ENABLED ? &this->METRICS : nullptr});
+    return !this->CANCELLED;
+}
 
-    std::priority_queue<
-        std::shared_ptr<Node>,
-        std::vector<std::shared_ptr<Node>>,
-        decltype(cmp)>
-        openSet(cmp);
+std::vector<Move> Solver::Trace(std::uint32_t node) const
+{
+    std::vector<Move> moves;
+    for (; nodes[node].parent != NO_PARENT; node = nodes[node].parent)
+        moves.push_back(nodes[node].move);
+    std::reverse(moves.begin(), moves.end());
+    return moves;
+}
 
-    std::unordered_set<std::string> visited;
+std::optional<std::vector<Move>> Solver::SolveComplete()
+{
+    std::priority_queue<OpenEntry, std::vector<OpenEntry>, std::greater<OpenEntry>> openSet;
+    StateTable best(INITIAL.KEY_WORDS); // state -> node holding its best g so far
+    std::vector<Move> moves;
+    Board current = INITIAL;
+
+    StartClock();
+    nodes.clear();
+    nodes.push_back({current.Pack(), NO_PARENT, {}, 0});
+    best.Insert(current.Pack(), 0);
+    openSet.push({H.calculate(current), 0, 0, 0});
 
-    auto startNode = std::make_shared<Node>(INITIAL, 0, H.calculate(INITIAL));
-    openSet.push(startNode);
     while (!openSet.empty())
     {
-        auto current = openSet.top();
-        openSet.pop();
+        OpenEntry top = openSet.top();
+        METRIC_TIMED(METRICS, QUEUE, openSet.pop());
+        if (top.g != nodes[top.node].g)
+        {
+            METRIC_ADD(METRICS, stale, 1);
+            continue; // a cheaper path to this state was found after this entry was pushed
+        }
 
-        std::string stateKey = current->board.Serialize();
-        if (visited.count(stateKey))
-            continue;
-        visited.insert(stateKey);
-        this->VISITED_NODES++;
+        METRIC_TIMED(METRICS, LOAD, current.Load(nodes[top.node].key));
+        METRIC_SIZES(METRICS, openSet.size(), best.Size(),
+                     nodes.capacity() * sizeof(Node) + openSet.size() * sizeof(OpenEntry) + best.Bytes());
+        if (!Expanded(openSet.size(), top.f))
+            return std::nullopt;
 
-        if (current->board.IsSolved())
+        if (current.IsSolved())
+            return Trace(top.node);
+
+        METRIC_TIMED(METRICS, GENERATE, current.GenerateMoves(moves));
+        METRIC_ADD(METRICS, generated, moves.size());
+        for (const Move &move : moves)
         {
-            std::vector<Board> path;
-            for (auto node = current; node != nullptr; node = node->parent)
+            current.Apply(move);
+            int g = top.g + Cost(COST, move);
+            auto [slot, inserted] = METRIC_TIMED(METRICS, HASH, best.Emplace(current.Pack(), static_cast<std::uint32_t>(nodes.size())));
+            if (inserted)
             {
-                path.push_back(node->board);
+                nodes.push_back({current.Pack(), top.node, move, g});
+                int h = METRIC_TIMED(METRICS, HEURISTIC, H.calculate(current));
+                METRIC_TIMED(METRICS, QUEUE, openSet.push({g + h, -g, g, *slot}));
             }
-            std::reverse(path.begin(), path.end());
-            return path;
-        }
-
-        auto successors = current->board.GenerateSuccessors();
-        for (auto &succ : successors)
-        {
-            std::string succKey = succ->Serialize();
-            if (visited.count(succKey))
-                continue;
-
-            int g = current->g + 1;
-            int h = H.calculate(*succ);
-            auto nextNode = std::make_shared<Node>(*succ, g, h, current);
-            openSet.push(nextNode);
+            else if (g < nodes[*slot].g)
+            {
+                // cheaper path: routine for open nodes when slides cost their distance,
+                // but a closed node is only reopened by an inconsistent heuristic
+                METRIC_ADD(METRICS, reopened, 1);
+                nodes[*slot] = {current.Pack(), top.node, move, g};
+                int h = METRIC_TIMED(METRICS, HEURISTIC, H.calculate(current));
+                METRIC_TIMED(METRICS, QUEUE, openSet.push({g + h, -g, g, *slot}));
+            }
+            else
+                METRIC_ADD(METRICS, duplicates, 1);
+            current.Undo(move);
         }
     }
 
-    return {}; // No solution found
+    return std::nullopt; // No solution found
 }
 
-std::vector<Board> Solver::SolveGreedy()
+std::optional<std::vector<Move>> Solver::SolveGreedy()
 {
-    auto cmp = [](const std::shared_ptr<Node> &a, const std::shared_ptr<Node> &b)
-    {
-        return a->h > b->h; // Min-heap based only on heuristic
-    };
-
-    std::priority_queue<
-        std::shared_ptr<Node>,
-        std::vector<std::shared_ptr<Node>>,
-        decltype(cmp)>
-        openSet(cmp);
+    std::priority_queue<OpenEntry, std::vector<OpenEntry>, std::greater<OpenEntry>> openSet;
+    StateTable seen(INITIAL.KEY_WORDS);
+    std::vector<Move> moves;
+    Board current = INITIAL;
 
-    std::unordered_set<std::string> visited;
-
-    int h = H.calculate(INITIAL);
-    auto startNode = std::make_shared<Node>(INITIAL, 0, h); // g=0, h=heuristic
-    openSet.push(startNode);
+    StartClock();
+    nodes.clear();
+    nodes.push_back({current.Pack(), NO_PARENT, {}, 0});
+    seen.Insert(current.Pack());
+    openSet.push({H.calculate(current), 0, 0, 0}); // f = h; ties: shallower first
 
     while (!openSet.empty())
     {
-        auto current = openSet.top();
-        openSet.pop();
+        OpenEntry top = openSet.top();
+        METRIC_TIMED(METRICS, QUEUE, openSet.pop());
+
+        METRIC_TIMED(METRICS, LOAD, current.Load(nodes[top.node].key));
+        METRIC_SIZES(METRICS, openSet.size(), seen.Size(),
+                     nodes.capacity() * sizeof(Node) + openSet.size() * sizeof(OpenEntry) + seen.Bytes());
+        if (!Expanded(openSet.size(), top.f))
+            return std::nullopt;
 
-        std::string stateKey = current->board.Serialize();
-        if (visited.count(stateKey))
-            continue;
-        visited.insert(stateKey);
-        this->VISITED_NODES++;
+        if (current.IsSolved())
+            return Trace(top.node);
 
-        if (current->board.IsSolved())
+        METRIC_TIMED(METRICS, GENERATE, current.GenerateMoves(moves));
+        METRIC_ADD(METRICS, generated, moves.size());
+        for (const Move &move : moves)
         {
-            std::vector<Board> path;
-            for (auto node = current; node != nullptr; node = node->parent)
+            current.Apply(move);
+            if (METRIC_TIMED(METRICS, HASH, seen.Insert(current.Pack())))
             {
-                path.push_back(node->board);
+                int g = top.g + Cost(COST, move);
+                nodes.push_back({current.Pack(), top.node, move, g});
+                int h = METRIC_TIMED(METRICS, HEURISTIC, H.calculate(current));
+                METRIC_TIMED(METRICS, QUEUE, openSet.push({h, g, g, static_cast<std::uint32_t>(nodes.size() - 1)}));
             }
-            std::reverse(path.begin(), path.end());
-            return path;
+            else
+                METRIC_ADD(METRICS, duplicates, 1);
+            current.Undo(move);
         }
+    }
+
+    return std::nullopt; // No solution found
+}
 
-        auto successors = current->board.GenerateSuccessors();
-        std::sort(successors.begin(), successors.end(), [](const auto &a, const auto &b)
-                  {
-                      return a->Serialize() < b->Serialize(); // Ensure consistent expansion
-                  });
+std::optional<std::vector<Move>> Solver::SolveAnytime()
+{
+    const int SCALE = 10; // keys are SCALE g + weight h, so the weight moves in tenths
+    std::priority_queue<OpenEntry, std::vector<OpenEntry>, std::greater<OpenEntry>> openSet;
+    StateTable best(INITIAL.KEY_WORDS); // state -> node holding its best g so far
+    std::vector<int> hs;                // per node: h
+    std::vector<int> expandedAt;        // per node: g when last expanded, INT_MAX if never
+    std::vector<int> closedIn;          // per node: the pass that expanded it last
+    std::vector<Move> moves;
+    Board current = INITIAL;
+
+    StartClock();
+    this->BOUND = 0;
+    nodes.clear();
+    auto add = [&](std::uint32_t parent, const Move &move, int g)
+    {
+        nodes.push_back({current.Pack(), parent, move, g});
+        hs.push_back(METRIC_TIMED(METRICS, HEURISTIC, H.calculate(current)));
+        expandedAt.push_back(INT_MAX);
+        closedIn.push_back(-1);
+    };
+    add(NO_PARENT, {}, 0);
+    best.Insert(current.Pack(), 0);
+
+    int incumbent = INT_MAX; // cost of the best solution so far
+    int reported = INT_MAX;  // cost of the last one handed to OnImproved
+    std::uint32_t goal = NO_PARENT;
+    int weight = 0;          // SCALE times the weight on h; 0 for the greedy pass
+    auto key = [&](int g, int h)
+    { return weight == 0 ? h : SCALE * g + weight * h; };
+    auto push = [&](std::uint32_t node)
+    {
+        int g = nodes[node].g;
+        METRIC_TIMED(METRICS, QUEUE, openSet.push({key(g, hs[node]), weight == 0 ? g : -g, g, node}));
+    };
 
-        for (auto &succ : successors)
+    // Every state expanded with a g that has improved since (or never expanded) is
+    // open or waiting for the next pass, and an optimal path always runs through one
+    // of them with its optimal g; so with an admissible h the cheapest g + h among
+    // them is a lower bound on the optimum. Those that cannot beat the incumbent are
+    // left out, which can only make the bound tighter than the incumbent itself.
+    auto bound = [&]()
+    {
+        long long lowest = incumbent;
+        for (std::size_t node = 0; node < nodes.size(); node++)
         {
-            std::string succKey = succ->Serialize();
-            if (visited.count(succKey))
+            if (expandedAt[node] != nodes[node].g)
+                lowest = std::min<long long>(lowest, nodes[node].g + hs[node]);
+        }
+        if (lowest <= 0)
+            return 1.0; // only the start has g = 0, and it is solved if it has not been expanded yet
+        return std::max(1.0, static_cast<double>(incumbent) / lowest);
+    };
+
+    push(0);
+    double epsilon = 0; // weight of the last weighted pass
+    for (int pass = 0;; pass++)
+    {
+        // one weighted A* pass: states are expanded at most once, and a closed state
+        // that improves waits for the next pass
+        while (!openSet.empty())
+        {
+            OpenEntry top = openSet.top();
+            if (goal != NO_PARENT && top.f >= key(incumbent, 0))
+                break; // nothing left can lead to a cheaper solution under this weight
+            METRIC_TIMED(METRICS, QUEUE, openSet.pop());
+            std::uint32_t node = top.node;
+            if (top.g != nodes[node].g || closedIn[node] == pass)
+            {
+                METRIC_ADD(METRICS, stale, 1);
                 continue;
+            }
+            METRIC_TIMED(METRICS, LOAD, current.Load(nodes[node].key));
+            METRIC_SIZES(METRICS, openSet.size(), best.Size(),
+                         nodes.capacity() * (sizeof(Node) + 3 * sizeof(int)) + openSet.size() * sizeof(OpenEntry) + best.Bytes());
+            if (!Expanded(openSet.size(), goal == NO_PARENT ? -1 : incumbent))
+            {
+                if (goal == NO_PARENT)
+                    return std::nullopt;
+                this->BOUND = bound();
+                return Trace(goal);
+            }
+            closedIn[node] = pass;
+            expandedAt[node] = top.g;
+
+            if (current.IsSolved())
+            {
+                if (top.g < incumbent)
+                {
+                    incumbent = top.g;
+                    goal = node;
+                }
+                continue;
+            }
+
+            METRIC_TIMED(METRICS, GENERATE, current.GenerateMoves(moves));
+            METRIC_ADD(METRICS, generated, moves.size());
+            for (const Move &move : moves)
+            {
+                int g = top.g + Cost(COST, move);
+                if (g >= incumbent)
+                    continue;
+                current.Apply(move);
+                auto [slot, inserted] = METRIC_TIMED(METRICS, HASH, best.Emplace(current.Pack(), static_cast<std::uint32_t>(nodes.size())));
+                std::uint32_t child = *slot;
+                if (inserted)
+                    add(node, move, g);
+                else if (g < nodes[child].g)
+                {
+                    METRIC_ADD(METRICS, reopened, 1);
+                    nodes[child] = {current.Pack(), node, move, g};
+                }
+                else
+                {
+                    METRIC_ADD(METRICS, duplicates, 1);
+                    current.Undo(move);
+                    continue;
+                }
+
+                // solutions are taken as soon as they are seen; solved states are never expanded
+                if (current.IsSolved())
+                {
+                    incumbent = g;
+                    goal = child;
+                }
+                else if (closedIn[child] != pass && g + hs[child] < incumbent)
+                    push(child);
+                current.Undo(move);
+            }
+        }
 
-            int h = H.calculate(*succ);
-            auto nextNode = std::make_shared<Node>(*succ, 0, h, current); // g is 0
-            openSet.push(nextNode);
+        if (goal == NO_PARENT)
+            return std::nullopt; // No solution found
+
+        double proven = bound();
+        bool better = incumbent < reported || proven < this->BOUND;
+        reported = incumbent;
+        this->BOUND = proven;
+        if (better && this->OnImproved)
+            this->OnImproved(Trace(goal), proven);
+        if (proven <= 1.0)
+            return Trace(goal);
+
+        // lower the weight, straight to the proven bound when that is already lower,
+        // and reopen every state that is not up to date
+        epsilon = std::max(1.0, std::min(pass == 0 ? ANYTIME_WEIGHT : epsilon - ANYTIME_STEP, proven));
+        weight = std::max(SCALE, static_cast<int>(epsilon * SCALE + 0.5));
+        openSet = {};
+        for (std::uint32_t node = 0; node < nodes.size(); node++)
+        {
+            if (expandedAt[node] != nodes[node].g && nodes[node].g + hs[node] < incumbent)
+                push(node);
         }
     }
-
-    return {}; // No solution found
 }
 
-std::vector<Board> Solver::SolveLowMemory()
+std::optional<std::vector<Move>> Solver::SolveLowMemory()
 {
-    struct SearchResult
-    {
-        std::shared_ptr<Node> result;
-        int nextThreshold;
-    };
-
-    std::unordered_map<std::string, int> globalF; // Global visited map: stateKey -> min f-cost
-
-    std::function<SearchResult(std::shared_ptr<Node>, int, std::unordered_set<std::string> &)> dfs;
-    dfs = [&](std::shared_ptr<Node> current, int threshold, std::unordered_set<std::string> &pathVisited) -> SearchResult
+    const int FOUND = -1, PUSHED = -2, STOPPED = -3; // results of enter() besides an f-value
+
+    std::optional<TranspositionTable> owned;
+    if (TABLE == nullptr)
+        owned.emplace(TT_BYTES);
+    else
+        TABLE->Clear();
+    TranspositionTable &table = TABLE != nullptr ? *TABLE : *owned;
+    std::vector<Frame> stack;                           // explicit DFS stack
+    std::vector<std::pair<int, Move>> successors;       // (h, move) for every frame on the stack
+    std::vector<Move> moves, path;
+    Board current = INITIAL;                            // made and unmade in place
+    std::uint32_t stamp = 0;                            // iteration number, for the table
+    int threshold = 0;
+
+    // Visit the node current is on, reached with cost g: either cut it off (returns
+    // the f-value that went over), or push a frame with its sorted children.
+    auto enter = [&](int g, int h) -> int
     {
-        std::string stateKey = current->board.Serialize();
-        int f = current->g + current->h;
+        StateKey key = current.Pack();
+        TranspositionTable::Entry *entry = METRIC_TIMED(METRICS, HASH, table.Find(key));
+        if (entry != nullptr)
+        {
+            if (entry->bound == TranspositionTable::DEAD)
+                return INT_MAX;
+            h = std::max(h, static_cast<int>(entry->bound)); // bound learned in earlier iterations
+        }
 
+        int f = g + h;
         if (f > threshold)
-            return {nullptr, f};
+            return f;
 
-        // Global pruning: skip if already visited with equal or better f
-        auto it = globalF.find(stateKey);
-        if (it != globalF.end() && it->second <= f)
-            return {nullptr, INT_MAX};
-        globalF[stateKey] = f;
+        // reached before in this iteration at least as cheaply (this also catches cycles):
+        // no path through here can finish within the threshold
+        if (entry != nullptr && entry->stamp == stamp && entry->g <= g)
+        {
+            METRIC_ADD(METRICS, duplicates, 1);
+            return threshold + 1;
+        }
 
-        // Cycle avoidance on current path
-        if (pathVisited.count(stateKey))
-            return {nullptr, INT_MAX};
+        // once entries are being evicted the table may have lost part of the path,
+        // so fall back to scanning the stack for cycles
+        if ((entry == nullptr || entry->stamp != stamp) && table.Replacements() != 0 &&
+            std::any_of(stack.begin(), stack.end(), [&](const Frame &frame)
+                        { return frame.key == key; }))
+        {
+            METRIC_ADD(METRICS, duplicates, 1);
+            return threshold + 1;
+        }
 
-        if (current->board.IsSolved())
-            return {current, threshold};
+        entry = table.Store(key, stamp);
+        entry->stamp = stamp;
+        entry->g = static_cast<std::uint16_t>(g);
 
-        pathVisited.insert(stateKey);
-        this->VISITED_NODES++;
+        if (current.IsSolved())
+            return FOUND;
 
-        int minThreshold = INT_MAX;
-        auto successors = current->board.GenerateSuccessors();
+        METRIC_SIZES(METRICS, stack.size() + 1, table.Size(),
+                     table.Bytes() + stack.capacity() * sizeof(Frame) + successors.capacity() * sizeof(successors[0]));
+        if (!Expanded(stack.size() + 1, threshold))
+            return STOPPED;
 
-        // Cache heuristic for each successor before sorting
-        std::vector<std::pair<std::shared_ptr<Board>, int>> successorsWithH;
-        for (auto &succ : successors)
+        // Cache heuristic for each successor, then sort by f = g + cost + h ascending
+        std::size_t begin = successors.size();
+        METRIC_TIMED(METRICS, GENERATE, current.GenerateMoves(moves));
+        METRIC_ADD(METRICS, generated, moves.size());
+        for (const Move &move : moves)
         {
-            int h = H.calculate(*succ);
-            successorsWithH.emplace_back(succ, h);
+            current.Apply(move);
+            successors.emplace_back(METRIC_TIMED(METRICS, HEURISTIC, H.calculate(current)), move);
+            current.Undo(move);
         }
+        std::stable_sort(successors.begin() + begin, successors.end(),
+                         [&](const auto &a, const auto &b)
+                         { return Cost(COST, a.second) + a.first < Cost(COST, b.second) + b.first; });
 
-        // Sort by f = g + h ascending
-        std::sort(successorsWithH.begin(), successorsWithH.end(),
-                  [&](const auto &a, const auto &b)
-                  {
-                      int fa = current->g + 1 + a.second;
-                      int fb = current->g + 1 + b.second;
-                      return fa < fb;
-                  });
+        stack.push_back({key, g, begin, begin, successors.size(), INT_MAX});
+        return PUSHED;
+    };
 
-        for (auto &[succ, h] : successorsWithH)
+    StartClock();
+    int h0 = H.calculate(current);
+    threshold = h0;
+
+    while (true)
+    {
+        stamp++;
+        int value = enter(0, h0);
+        if (value == FOUND)
+            return path;
+        if (value == STOPPED)
+            return std::nullopt;
+
+        while (!stack.empty())
         {
-            std::string succKey = succ->Serialize();
-            if (pathVisited.count(succKey))
+            Frame &top = stack.back();
+            if (top.next < top.end)
+            {
+                auto [h, move] = successors[top.next++];
+                int g = top.g + Cost(COST, move);
+                current.Apply(move);
+                path.push_back(move);
+
+                int result = enter(g, h);
+                if (result == FOUND)
+                    return path;
+                if (result == STOPPED)
+                    return std::nullopt;
+                if (result == PUSHED)
+                    continue;
+
+                current.Undo(move);
+                path.pop_back();
+                stack.back().minExceeded = std::min(stack.back().minExceeded, result);
                 continue;
+            }
 
-            int g = current->g + 1;
-            auto nextNode = std::make_shared<Node>(*succ, g, h, current);
+            // every child tried: the smallest f that went over bounds this node's cost-to-go
+            Frame done = top;
+            stack.pop_back();
+            successors.resize(done.begin);
 
-            auto result = dfs(nextNode, threshold, pathVisited);
-            if (result.result != nullptr)
+            TranspositionTable::Entry *entry = table.Find(done.key);
+            if (entry != nullptr)
             {
-                pathVisited.erase(stateKey); // backtrack
-                return result;
+                int bound = done.minExceeded == INT_MAX ? TranspositionTable::DEAD
+                                                        : std::min(done.minExceeded - done.g, TranspositionTable::DEAD - 1);
+                if (bound > entry->bound)
+                    entry->bound = static_cast<std::uint16_t>(bound);
             }
 
-            minThreshold = std::min(minThreshold, result.nextThreshold);
+            if (stack.empty())
+            {
+                value = done.minExceeded;
+                break;
+            }
+            current.Undo(path.back());
+            path.pop_back();
+            stack.back().minExceeded = std::min(stack.back().minExceeded, done.minExceeded);
         }
 
-        pathVisited.erase(stateKey); // backtrack
-        return {nullptr, minThreshold};
-    };
+        if (value == INT_MAX)
+        {
+            break;
+        }
 
-    int h0 = H.calculate(INITIAL);
-    auto root = std::make_shared<Node>(INITIAL, 0, h0);
+        threshold = value;
+    }
 
-    int threshold = h0;
+    return std::nullopt; // No solution found
+}
 
-    while (true)
+bool Solver::GoalStates(std::vector<StateKey> &goals) const
+{
+    // Pieces sharing a line can never pass each other, so every reachable solved state
+    // keeps the initial order on each line. All such placements are seeded: a superset
+    // of the reachable ones, since some may still be cut off by crossing pieces, and
+    // the extra goals are harmless as the forward side never meets them. P is parked
+    // at the exit and the rest are placed one by one, sliding a scratch board's pieces
+    // to get the keys.
+    const std::vector<Piece> &pieces = INITIAL.Pieces;
+    std::vector<int> order = {INITIAL.PRIMARY};
+    for (int i = 0; i < static_cast<int>(pieces.size()); i++)
     {
-        globalF.clear(); // Clear global visited at each iteration
-        std::unordered_set<std::string> pathVisited;
+        if (i != INITIAL.PRIMARY)
+            order.push_back(i);
+    }
 
-        auto result = dfs(root, threshold, pathVisited);
+    Board scratch = INITIAL;
+    std::vector<std::uint64_t> rows(INITIAL.N, 0);
+    std::vector<int> placed(pieces.size()); // start of each piece placed so far
+    goals.clear();
 
-        if (result.result != nullptr)
+    auto start = [](const Piece &piece)
+    { return piece.isVertical ? piece.pos.first : piece.pos.second; };
+    auto cells = [&](const Piece &piece, int at, std::vector<std::uint64_t> &into, bool set)
+    {
+        bool clear = true;
+        for (int k = 0; k < piece.length; k++)
         {
-            // Reconstruct path from result node
-            std::vector<Board> path;
-            for (auto node = result.result; node != nullptr; node = node->parent)
-                path.push_back(node->board);
-            std::reverse(path.begin(), path.end());
-            return path;
+            int r = piece.isVertical ? at + k : piece.pos.first;
+            int c = piece.isVertical ? piece.pos.second : at + k;
+            clear &= !(into[r] >> c & 1);
+            if (set)
+                into[r] ^= 1ULL << c;
+        }
+        return clear;
+    };
+
+    std::size_t work = 0; // partial placements tried; dead ends count against the budget too
+    std::function<bool(std::size_t)> place = [&](std::size_t depth) -> bool
+    {
+        if (++work > 4 * GOAL_BUDGET)
+            return false;
+        if (depth == order.size())
+        {
+            goals.push_back(scratch.Pack());
+            return goals.size() <= GOAL_BUDGET;
         }
 
-        if (result.nextThreshold == INT_MAX)
+        int index = order[depth];
+        const Piece &piece = pieces[index];
+        int size = piece.isVertical ? INITIAL.N : INITIAL.M;
+        int first = 0, last = size - piece.length;
+        if (index == INITIAL.PRIMARY)
+            first = last;
+
+        for (int at = first; at <= last; at++)
         {
-            break;
+            bool fits = cells(piece, at, rows, false);
+            for (std::size_t k = 0; fits && k < depth; k++)
+            {
+                const Piece &other = pieces[order[k]];
+                bool sameLine = other.isVertical == piece.isVertical &&
+                                (piece.isVertical ? other.pos.second == piece.pos.second : other.pos.first == piece.pos.first);
+                if (sameLine)
+                    fits = (start(other) < start(piece)) == (placed[order[k]] < at);
+            }
+            if (!fits)
+                continue;
+
+            int delta = at - start(scratch.Pieces[index]);
+            scratch.Apply({static_cast<std::uint8_t>(index), static_cast<std::int8_t>(delta)});
+            placed[index] = at;
+            cells(piece, at, rows, true);
+            bool more = place(depth + 1);
+            cells(piece, at, rows, true);
+            scratch.Apply({static_cast<std::uint8_t>(index), static_cast<std::int8_t>(-delta)});
+            if (!more)
+                return false;
         }
+        return true;
+    };
+    return place(0);
+}
 
-        threshold = result.nextThreshold;
+std::optional<std::vector<Move>> Solver::SolveBidirectional()
+{
+    // one breadth-first search per end; each remembers its nodes and their depth
+    struct Side
+    {
+        StateTable seen; // state -> index into nodes
+        std::vector<Node> nodes;
+        std::vector<std::uint32_t> frontier;
+    };
+
+    std::vector<StateKey> goals;
+    if (INITIAL.IsSolved())
+    {
+        StartClock();
+        return std::vector<Move>();
+    }
+    if (!GoalStates(goals))
+        return SolveComplete(); // too many solved states to start from; search from the front only
+
+    StartClock();
+    Side forward{StateTable(INITIAL.KEY_WORDS), {}, {}};
+    Side backward{StateTable(INITIAL.KEY_WORDS, goals.size() * 2), {}, {}};
+    forward.seen.Insert(INITIAL.Pack(), 0);
+    forward.nodes.push_back({INITIAL.Pack(), NO_PARENT, {}, 0});
+    forward.frontier.push_back(0);
+    for (const StateKey &goal : goals)
+    {
+        backward.seen.Insert(goal, static_cast<std::uint32_t>(backward.nodes.size()));
+        backward.frontier.push_back(static_cast<std::uint32_t>(backward.nodes.size()));
+        backward.nodes.push_back({goal, NO_PARENT, {}, 0});
+    }
+
+    Board current = INITIAL;
+    std::vector<Move> moves;
+    std::vector<std::uint32_t> next;
+    int best = INT_MAX;
+    std::uint32_t meetForward = 0, meetBackward = 0;
+
+    while (best == INT_MAX && !forward.frontier.empty() && !backward.frontier.empty())
+    {
+        // grow the smaller frontier by one whole layer; the cheapest meeting seen
+        // in that layer is an optimal path
+        bool forwards = forward.frontier.size() <= backward.frontier.size();
+        Side &side = forwards ? forward : backward;
+        Side &other = forwards ? backward : forward;
+
+        next.clear();
+        for (std::uint32_t index : side.frontier)
+        {
+            METRIC_TIMED(METRICS, LOAD, current.Load(side.nodes[index].key));
+            METRIC_SIZES(METRICS, side.frontier.size() + other.frontier.size(), forward.seen.Size() + backward.seen.Size(),
+                         (forward.nodes.capacity() + backward.nodes.capacity()) * sizeof(Node) +
+                             forward.seen.Bytes() + backward.seen.Bytes());
+            if (!Expanded(side.frontier.size() + other.frontier.size(), side.nodes[index].g))
+                return std::nullopt;
+
+            int g = side.nodes[index].g + 1;
+            METRIC_TIMED(METRICS, GENERATE, current.GenerateMoves(moves));
+            if (COST == CostModel::CELLS)
+            {
+                // one cell at a time keeps every step at cost 1, so the layers stay exact
+                moves.erase(std::remove_if(moves.begin(), moves.end(), [](const Move &move)
+                                           { return std::abs(move.delta) != 1; }),
+                            moves.end());
+            }
+            METRIC_ADD(METRICS, generated, moves.size());
+            for (const Move &move : moves)
+            {
+                current.Apply(move);
+                auto [slot, inserted] = METRIC_TIMED(METRICS, HASH, side.seen.Emplace(current.Pack(), static_cast<std::uint32_t>(side.nodes.size())));
+                std::uint32_t child = *slot;
+                if (inserted)
+                {
+                    side.nodes.push_back({current.Pack(), index, move, g});
+                    next.push_back(child);
+                }
+                else
+                    METRIC_ADD(METRICS, duplicates, 1);
+
+                const std::uint32_t *meet = METRIC_TIMED(METRICS, HASH, other.seen.Find(current.Pack()));
+                if (meet != nullptr && side.nodes[child].g + other.nodes[*meet].g < best)
+                {
+                    best = side.nodes[child].g + other.nodes[*meet].g;
+                    meetForward = forwards ? child : *meet;
+                    meetBackward = forwards ? *meet : child;
+                }
+                current.Undo(move);
+            }
+        }
+        side.frontier.swap(next);
     }
 
-    return {}; // No solution found
+    if (best == INT_MAX)
+        return std::nullopt; // No solution found
+
+    // start -> meeting state from the forward tree, then back down the backward tree
+    std::vector<Move> path;
+    for (std::uint32_t node = meetForward; forward.nodes[node].parent != NO_PARENT; node = forward.nodes[node].parent)
+        path.push_back(forward.nodes[node].move);
+    std::reverse(path.begin(), path.end());
+    for (std::uint32_t node = meetBackward; backward.nodes[node].parent != NO_PARENT; node = backward.nodes[node].parent)
+        path.push_back(backward.nodes[node].move.Inverse());
+    return COST == CostModel::CELLS ? Compress(path) : path;
 }
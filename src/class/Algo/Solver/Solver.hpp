@@ -2,10 +2,27 @@
 #define __Solver__
 
 #include "../../Board/Board.hpp"
+#include "../../Board/Cost.hpp"
 #include "../Heuristics/Heuristics.hpp"
+#include "../Metrics/Metrics.hpp"
+#include "../Transposition/TranspositionTable.hpp"
 
-#include <memory>
-#include <unordered_set>
+#include <chrono>
+#include <cstddef>
+#include <cstdint>
+#include <functional>
+#include <optional>
+#include <vector>
+
+// snapshot of a running search, handed to Solver::OnProgress
+struct SearchProgress
+{
+    int expanded;       // nodes expanded so far
+    std::size_t open;   // open-set size (recursion depth for IDA*)
+    int bound;          // current f-bound (ARA*: cost of the best solution so far, -1 before the first)
+    long long elapsed;  // milliseconds since the search started
+    const Metrics *metrics = nullptr; // the search's counters so far; RH_METRICS builds only
+};
 
 class Solver
 {
@@ -13,33 +30,89 @@ private:
     Board INITIAL;
     Heuristics H;
 
-    // helper structure
+    std::chrono::steady_clock::time_point startTime;
+    std::chrono::steady_clock::time_point lastReport;
+
+    void StartClock();
+    bool Expanded(std::size_t open, int bound); // count an expansion, report progress when due; false to stop
+
+    // helper structures: search nodes live in one arena and refer to their parent by index
+    static const std::uint32_t NO_PARENT = UINT32_MAX;
+
     struct Node
     {
-        Board board;
-        int g;                        // cost from start
-        int h;                        // heuristic
-        int f;                        // total = g + h
-        std::shared_ptr<Node> parent; // parent node
+        StateKey key;
+        std::uint32_t parent; // index into nodes
+        Move move;            // move from parent to this node
+        int g;                // cost from start
+    };
 
-        Node(Board board, int g, int h, std::shared_ptr<Node> parent = nullptr)
-            : board(board), g(g), h(h), f(g + h), parent(parent) {}
+    struct OpenEntry
+    {
+        int f;              // priority
+        int tie;            // smaller first among equal f
+        int g;              // g when pushed; stale if the node has improved since
+        std::uint32_t node; // index into nodes
 
         // For priority queue comparison
-        bool operator>(const Node &other) const
+        bool operator>(const OpenEntry &other) const
         {
-            return f > other.f;
+            return f != other.f ? f > other.f : tie > other.tie;
         }
     };
 
+    std::vector<Node> nodes;
+    std::vector<Move> Trace(std::uint32_t node) const; // moves from the root to node
+
+    // bidirectional search: every solved state that keeps each line's initial order
+    // (all the reachable ones, and possibly more), or false past the budget
+    bool GoalStates(std::vector<StateKey> &goals) const;
+
+    // IDA* depth-first frame; its children are successors[next, end) of the shared buffer
+    struct Frame
+    {
+        StateKey key;
+        int g;
+        std::size_t begin, next, end;
+        int minExceeded; // smallest f that went over the threshold below this node
+    };
+
 public:
     int VISITED_NODES;
+    std::size_t PEAK_OPEN = 0; // largest open set (IDA*: deepest stack) of the last search
+    Metrics METRICS;           // counters and phase times of the last search (see Metrics.hpp)
+
+    std::function<bool(const SearchProgress &)> OnProgress; // optional progress listener; false stops the search
+    int PROGRESS_INTERVAL = 100;                             // milliseconds between reports
+    bool CANCELLED = false;                                  // the last search was stopped by OnProgress or NODE_LIMIT
+    long long NODE_LIMIT = 0;                                // stop after this many expansions (0 = never)
+
+    std::size_t TT_BYTES = std::size_t(64) << 20; // IDA* transposition table budget
+    TranspositionTable *TABLE = nullptr;          // IDA*: reuse this table (cleared first) instead of allocating one
+    std::size_t GOAL_BUDGET = std::size_t(1) << 21; // BIDI: most solved states to start the backward search from
+    CostModel COST = CostModel::MOVES;              // what each slide costs (see Cost.hpp)
+
+    // ARA*: the first pass is greedy, later ones inflate h by a weight that starts at
+    // ANYTIME_WEIGHT and drops by ANYTIME_STEP (or to the proven bound, if lower) down to 1
+    double ANYTIME_WEIGHT = 3.0;
+    double ANYTIME_STEP = 0.5;
+    double BOUND = 0; // ARA*: the last solution costs at most BOUND times the optimum (1: optimal)
+    std::function<void(const std::vector<Move> &, double)> OnImproved; // ARA*: each better solution and its BOUND
 
     Solver(Board board, Heuristics H) : INITIAL(board), H(H), VISITED_NODES(0) {};
 
-    std::vector<Board> SolveComplete();  // A* and UCS
-    std::vector<Board> SolveGreedy();    // GBFS
-    std::vector<Board> SolveLowMemory(); // IDA*
+    // each returns the moves from the initial board, cheapest under COST for all but
+    // GBFS, or nothing if it cannot be solved
+    std::optional<std::vector<Move>> SolveComplete();  // A* and UCS
+    std::optional<std::vector<Move>> SolveGreedy();    // GBFS
+    std::optional<std::vector<Move>> SolveLowMemory(); // IDA*
+    std::optional<std::vector<Move>> SolveBidirectional(); // BIDI: breadth-first from both ends, optimal
+
+    // ARA*: anytime repairing A*. A greedy solution first, then cheaper ones as the
+    // weight drops, each handed to OnImproved; ends when one is proven optimal. When
+    // stopped it returns the best solution so far (CANCELLED is still set) with BOUND.
+    // The bound assumes an admissible heuristic.
+    std::optional<std::vector<Move>> SolveAnytime();
 };
 
-#endif
\ No newline at end of file
+#endif
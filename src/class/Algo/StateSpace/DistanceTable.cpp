@@ -0,0 +1,83 @@
+#include "DistanceTable.hpp"
+
+#include <cstring>
+
+const char DistanceTable::MAGIC[8] = {'R', 'H', 'S', 'T', 'A', 'T', 'E', 'S'};
+
+std::size_t DistanceTable::HeaderBytes(std::size_t pieces)
+{
+    return (8 + 6 * 4 + 8 + pieces * 4 + 7) / 8 * 8;
+}
+
+bool DistanceTable::Open(const std::string &path)
+{
+    if (!this->file.Open(path) || this->file.Size() < HeaderBytes(0) ||
+        std::memcmp(this->file.Data(), MAGIC, sizeof(MAGIC)) != 0)
+    {
+        this->file.Close();
+        return false;
+    }
+
+    const std::uint8_t *data = this->file.Data();
+    std::uint32_t fields[6];
+    std::memcpy(fields, data + 8, sizeof(fields));
+    std::memcpy(&this->count, data + 32, sizeof(this->count));
+    this->N = fields[0];
+    this->M = fields[1];
+    this->pieces = fields[2];
+    this->words = fields[4];
+
+    std::size_t header = HeaderBytes(this->pieces);
+    if (this->words < 1 || this->words > StateKey::MAX_WORDS ||
+        this->file.Size() != header + this->count * (this->words * 8 + 1))
+    {
+        this->file.Close();
+        return false;
+    }
+    this->geometry = data + 40;
+    this->keys = reinterpret_cast<const std::uint64_t *>(data + header);
+    this->distances = data + header + this->count * this->words * 8;
+    return true;
+}
+
+bool DistanceTable::Matches(const Board &board) const
+{
+    if (!this->file.IsOpen() || this->N != static_cast<std::uint32_t>(board.N) || this->M != static_cast<std::uint32_t>(board.M) ||
+        this->pieces != board.Pieces.size() || this->words != static_cast<std::uint32_t>(board.KEY_WORDS))
+        return false;
+
+    for (std::size_t i = 0; i < board.Pieces.size(); i++)
+    {
+        const Piece &piece = board.Pieces[i];
+        const std::uint8_t *entry = this->geometry + i * 4;
+        int line = piece.isVertical ? piece.pos.second : piece.pos.first;
+        if (entry[0] != static_cast<std::uint8_t>(piece.id) || entry[1] != piece.isVertical ||
+            entry[2] != line || entry[3] != piece.length)
+            return false;
+    }
+    return true;
+}
+
+StateKey DistanceTable::Key(std::size_t state) const
+{
+    StateKey key;
+    for (std::uint32_t w = 0; w < this->words; w++)
+        key.w[w] = this->keys[state * this->words + w];
+    return key;
+}
+
+int DistanceTable::Lookup(const StateKey &key) const
+{
+    std::size_t low = 0, high = this->count;
+    while (low < high)
+    {
+        std::size_t middle = low + (high - low) / 2;
+        if (Key(middle) < key)
+            low = middle + 1;
+        else
+            high = middle;
+    }
+    if (low < this->count && Key(low) == key)
+        return this->distances[low];
+    return -1;
+}
@@ -0,0 +1,46 @@
+#ifndef __DISTANCETABLE__
+#define __DISTANCETABLE__
+
+#include "../../Board/Board.hpp"
+#include "../../Storage/MappedFile.hpp"
+
+#include <cstddef>
+#include <cstdint>
+#include <string>
+
+// Memory-mapped states.bin written by StateSpace: every state reachable from
+// one board, sorted by packed key, with its exact distance to the goal.
+//
+// Layout (little-endian):
+//   "RHSTATES"                                       8 bytes
+//   N, M, pieces, KEY_BITS, KEY_WORDS, 0             uint32 each
+//   count                                            uint64
+//   per piece, sorted by id: id, vertical, line, length   4 bytes each, padded to 8
+//   keys                                             count * KEY_WORDS uint64, sorted
+//   distances                                        count bytes, 255 = cannot be solved
+class DistanceTable
+{
+private:
+    MappedFile file;
+    std::uint32_t N = 0, M = 0, pieces = 0, words = 0;
+    std::uint64_t count = 0;
+    const std::uint8_t *geometry = nullptr;
+    const std::uint64_t *keys = nullptr;
+    const std::uint8_t *distances = nullptr;
+
+public:
+    static constexpr std::uint8_t UNSOLVABLE = 255;
+    static const char MAGIC[8];
+
+    static std::size_t HeaderBytes(std::size_t pieces); // offset of the keys
+
+    bool Open(const std::string &path); // false if missing or not a states.bin
+    bool Matches(const Board &board) const; // same size, pieces and lines, so keys mean the same
+
+    std::size_t Size() const { return count; }
+    StateKey Key(std::size_t state) const;
+    int Distance(std::size_t state) const { return distances[state]; }
+    int Lookup(const StateKey &key) const; // distance of key, or -1 if it is not in the table
+};
+
+#endif
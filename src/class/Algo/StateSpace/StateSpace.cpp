@@ -0,0 +1,354 @@
+#include "StateSpace.hpp"
+#include "DistanceTable.hpp"
+
+#include <algorithm>
+#include <cstring>
+#include <filesystem>
+#include <fstream>
+#include <functional>
+#include <memory>
+#include <queue>
+#include <system_error>
+#include <thread>
+
+namespace
+{
+    // keys on disk: KEY_WORDS native words each, no framing
+    class KeyWriter
+    {
+    private:
+        std::ofstream out;
+        int words;
+
+    public:
+        std::size_t count = 0;
+
+        KeyWriter(const std::string &path, int words) : out(path, std::ios::binary), words(words) {};
+
+        void Put(const StateKey &key)
+        {
+            out.write(reinterpret_cast<const char *>(key.w), words * sizeof(std::uint64_t));
+            count++;
+        }
+        bool Good() const { return static_cast<bool>(out); }
+    };
+
+    class KeyReader
+    {
+    private:
+        std::ifstream in;
+        int words;
+
+    public:
+        StateKey key;
+
+        KeyReader(const std::string &path, int words, std::size_t skip = 0) : in(path, std::ios::binary), words(words)
+        {
+            in.seekg(static_cast<std::streamoff>(skip * words * sizeof(std::uint64_t)));
+        }
+
+        bool Next()
+        {
+            in.read(reinterpret_cast<char *>(key.w), words * sizeof(std::uint64_t));
+            return static_cast<bool>(in);
+        }
+    };
+
+    // k-way merge of sorted key files: visit(key, source) once per distinct key,
+    // in order, skipping keys present in any of the sorted files in minus
+    void Merge(const std::vector<std::string> &sources, const std::vector<std::string> &minus, int words,
+               const std::function<void(const StateKey &, std::size_t)> &visit)
+    {
+        std::vector<std::unique_ptr<KeyReader>> readers;
+        using Head = std::pair<StateKey, std::size_t>;
+        auto later = [](const Head &a, const Head &b)
+        { return b.first < a.first; };
+        std::priority_queue<Head, std::vector<Head>, decltype(later)> heads(later);
+        for (std::size_t i = 0; i < sources.size(); i++)
+        {
+            readers.push_back(std::make_unique<KeyReader>(sources[i], words));
+            if (readers[i]->Next())
+                heads.push({readers[i]->key, i});
+        }
+
+        std::vector<std::unique_ptr<KeyReader>> excluded;
+        std::vector<bool> more;
+        for (const std::string &path : minus)
+        {
+            excluded.push_back(std::make_unique<KeyReader>(path, words));
+            more.push_back(excluded.back()->Next());
+        }
+
+        bool any = false;
+        StateKey last;
+        while (!heads.empty())
+        {
+            auto [key, source] = heads.top();
+            heads.pop();
+            if (readers[source]->Next())
+                heads.push({readers[source]->key, source});
+            if (any && key == last)
+                continue;
+            any = true;
+            last = key;
+
+            bool skip = false;
+            for (std::size_t i = 0; i < excluded.size(); i++)
+            {
+                while (more[i] && excluded[i]->key < key)
+                    more[i] = excluded[i]->Next();
+                skip |= more[i] && excluded[i]->key == key;
+            }
+            if (!skip)
+                visit(key, source);
+        }
+    }
+}
+
+std::string StateSpace::Scratch(const std::string &kind)
+{
+    return this->work + "/" + kind + "-" + std::to_string(this->files++) + ".keys";
+}
+
+std::vector<std::string> StateSpace::Expand(const std::string &layer, std::size_t count,
+                                            std::vector<StateKey> *goals)
+{
+    int words = INITIAL.KEY_WORDS;
+    std::size_t capacity = std::max<std::size_t>(1024, MEMORY / THREADS / sizeof(StateKey));
+    std::vector<std::vector<std::string>> runs(THREADS);
+    std::vector<std::vector<StateKey>> solved(THREADS);
+
+    auto expand = [&](int id)
+    {
+        std::size_t begin = count * id / THREADS, end = count * (id + 1) / THREADS;
+        KeyReader reader(layer, words, begin);
+        Board board = INITIAL;
+        std::vector<Move> moves;
+        std::vector<StateKey> buffer;
+        buffer.reserve(std::min(capacity, (end - begin) * 16 + 16));
+
+        auto spill = [&]
+        {
+            std::sort(buffer.begin(), buffer.end());
+            buffer.erase(std::unique(buffer.begin(), buffer.end()), buffer.end());
+            runs[id].push_back(Scratch("run"));
+            KeyWriter writer(runs[id].back(), words);
+            for (const StateKey &key : buffer)
+                writer.Put(key);
+            buffer.clear();
+        };
+
+        for (std::size_t i = begin; i < end && reader.Next(); i++)
+        {
+            board.Load(reader.key);
+            if (goals != nullptr && board.IsSolved())
+                solved[id].push_back(reader.key);
+
+            board.GenerateMoves(moves);
+            for (const Move &move : moves)
+            {
+                board.Apply(move);
+                buffer.push_back(board.Pack());
+                board.Undo(move);
+            }
+            if (buffer.size() >= capacity)
+                spill();
+        }
+        if (!buffer.empty())
+            spill();
+    };
+
+    std::vector<std::thread> threads;
+    for (int id = 1; id < THREADS; id++)
+        threads.emplace_back(expand, id);
+    expand(0);
+    for (std::thread &thread : threads)
+        thread.join();
+
+    // each thread took a contiguous slice of a sorted layer, so its goals are in order too
+    std::vector<std::string> all;
+    for (int id = 0; id < THREADS; id++)
+    {
+        all.insert(all.end(), runs[id].begin(), runs[id].end());
+        if (goals != nullptr)
+            goals->insert(goals->end(), solved[id].begin(), solved[id].end());
+    }
+    return all;
+}
+
+std::vector<std::string> StateSpace::Layers(const std::string &start, std::size_t count,
+                                            std::vector<std::size_t> &counts, std::vector<std::string> *goals)
+{
+    int words = INITIAL.KEY_WORDS;
+    std::vector<std::string> layers = {start};
+    counts = {count};
+    this->total = count;
+
+    while (true)
+    {
+        std::vector<StateKey> solved;
+        std::vector<std::string> runs = Expand(layers.back(), counts.back(), goals != nullptr ? &solved : nullptr);
+        if (!solved.empty())
+        {
+            goals->push_back(Scratch("goals"));
+            KeyWriter writer(goals->back(), words);
+            for (const StateKey &key : solved)
+                writer.Put(key);
+        }
+
+        // new layer = successors that are not in this layer or the one before
+        std::vector<std::string> minus = {layers.back()};
+        if (layers.size() >= 2)
+            minus.push_back(layers[layers.size() - 2]);
+        std::string next = Scratch("layer");
+        std::size_t size;
+        {
+            KeyWriter writer(next, words);
+            Merge(runs, minus, words, [&](const StateKey &key, std::size_t)
+                  { writer.Put(key); });
+            size = writer.count;
+        }
+
+        std::error_code error;
+        for (const std::string &run : runs)
+            std::filesystem::remove(run, error);
+        if (size == 0)
+        {
+            std::filesystem::remove(next, error);
+            return layers;
+        }
+        layers.push_back(next);
+        counts.push_back(size);
+        this->total += size;
+        if (LIMIT != 0 && this->total > LIMIT)
+            return layers; // Write sees total over the limit and gives up
+    }
+}
+
+bool StateSpace::Write(const std::string &path)
+{
+    int words = INITIAL.KEY_WORDS;
+    std::error_code error;
+    // both private to this process: other daemons may build or map the same table
+    this->work = MappedFile::Private(path + ".work");
+    std::filesystem::remove_all(this->work, error);
+    if (!std::filesystem::create_directories(this->work, error))
+        return false;
+
+    // 1. out from the initial board, noting every solved state on the way
+    std::string start = Scratch("layer");
+    {
+        KeyWriter writer(start, words);
+        writer.Put(INITIAL.Pack());
+    }
+    std::vector<std::string> goalFiles;
+    std::vector<std::size_t> counts;
+    std::vector<std::string> sources = Layers(start, 1, counts, &goalFiles);
+    if (LIMIT != 0 && this->total > LIMIT)
+    {
+        std::filesystem::remove_all(this->work, error);
+        return false;
+    }
+    this->STATES = 0;
+    for (std::size_t count : counts)
+        this->STATES += count;
+
+    // 2. out from all solved states at once; layer d holds the states d moves from the goal
+    std::vector<std::string> goalLayer = {Scratch("layer")};
+    {
+        KeyWriter writer(goalLayer[0], words);
+        Merge(goalFiles, {}, words, [&](const StateKey &key, std::size_t)
+              { writer.Put(key); });
+        this->GOALS = writer.count;
+    }
+    bool solvable = this->GOALS > 0;
+    if (solvable)
+    {
+        for (const std::string &file : sources)
+            std::filesystem::remove(file, error);
+        sources = Layers(goalLayer[0], this->GOALS, counts, nullptr);
+        if (sources.size() > DistanceTable::UNSOLVABLE)
+        {
+            std::filesystem::remove_all(this->work, error);
+            return false; // distances would not fit in a byte
+        }
+    }
+    this->FARTHEST = solvable ? static_cast<int>(sources.size()) - 1 : 0;
+    this->DEPTH = -1;
+
+    // 3. merge the layers into one sorted table: keys now, distances after them
+    std::string partial = MappedFile::Private(path + ".tmp");
+    std::ofstream out(partial, std::ios::binary);
+    std::vector<char> header(DistanceTable::HeaderBytes(INITIAL.Pieces.size()), 0);
+    std::uint32_t fields[6] = {static_cast<std::uint32_t>(INITIAL.N), static_cast<std::uint32_t>(INITIAL.M),
+                               static_cast<std::uint32_t>(INITIAL.Pieces.size()), static_cast<std::uint32_t>(INITIAL.KEY_BITS),
+                               static_cast<std::uint32_t>(words), 0};
+    std::uint64_t count = this->STATES;
+    std::memcpy(header.data(), DistanceTable::MAGIC, sizeof(DistanceTable::MAGIC));
+    std::memcpy(header.data() + 8, fields, sizeof(fields));
+    std::memcpy(header.data() + 32, &count, sizeof(count));
+    for (std::size_t i = 0; i < INITIAL.Pieces.size(); i++)
+    {
+        const Piece &piece = INITIAL.Pieces[i];
+        header[40 + i * 4] = piece.id;
+        header[40 + i * 4 + 1] = piece.isVertical;
+        header[40 + i * 4 + 2] = static_cast<char>(piece.isVertical ? piece.pos.second : piece.pos.first);
+        header[40 + i * 4 + 3] = static_cast<char>(piece.length);
+    }
+    out.write(header.data(), header.size());
+
+    std::string distancePath = this->work + "/distances";
+    std::size_t written = 0;
+    {
+        std::ofstream distances(distancePath, std::ios::binary);
+        StateKey initial = INITIAL.Pack();
+        Merge(sources, {}, words, [&](const StateKey &key, std::size_t layer)
+              {
+                  out.write(reinterpret_cast<const char *>(key.w), words * sizeof(std::uint64_t));
+                  char distance = static_cast<char>(solvable ? layer : DistanceTable::UNSOLVABLE);
+                  distances.put(distance);
+                  if (solvable && key == initial)
+                      this->DEPTH = static_cast<int>(layer);
+                  written++; });
+    }
+    {
+        std::ifstream distances(distancePath, std::ios::binary);
+        out << distances.rdbuf();
+    }
+    bool good = static_cast<bool>(out) && written == this->STATES;
+    out.close();
+
+    std::filesystem::remove_all(this->work, error);
+    if (!good)
+    {
+        std::filesystem::remove(partial, error);
+        return false;
+    }
+    return MappedFile::Replace(partial, path);
+}
+
+std::string StateSpace::CacheName(const Board &board)
+{
+    // FNV-1a over everything the keys depend on
+    std::uint64_t hash = 0xCBF29CE484222325ULL;
+    auto mix = [&](int value)
+    {
+        hash ^= static_cast<std::uint64_t>(value) & 0xFF;
+        hash *= 0x100000001B3ULL;
+    };
+    mix(board.N);
+    mix(board.M);
+    for (const Piece &piece : board.Pieces)
+    {
+        mix(piece.id);
+        mix(piece.isVertical);
+        mix(piece.isVertical ? piece.pos.second : piece.pos.first);
+        mix(piece.length);
+    }
+
+    static const char DIGITS[] = "0123456789abcdef";
+    std::string name = "states-";
+    for (int shift = 60; shift >= 0; shift -= 4)
+        name += DIGITS[(hash >> shift) & 0xF];
+    return name + ".bin";
+}
@@ -0,0 +1,59 @@
+#ifndef __STATESPACE__
+#define __STATESPACE__
+
+#include "../../Board/Board.hpp"
+
+#include <atomic>
+#include <cstddef>
+#include <cstdint>
+#include <string>
+#include <vector>
+
+// Every state reachable from a board, with its exact distance (in moves) to the
+// nearest solved state, written as a DistanceTable file.
+//
+// Both passes are layered breadth-first searches. Slides are reversible, so the
+// neighbours of layer d all lie in layers d - 1, d and d + 1: a new layer is its
+// sorted successors minus the two layers before it, and no visited set is kept.
+// Layers live in sorted key files. Successors are buffered in RAM by every
+// thread, spilled as sorted runs when the budget fills, and merged from disk.
+// The first pass goes out from the initial board and collects the solved
+// states; the second goes out from all of those at once, so its layer number
+// is each state's distance to the goal.
+class StateSpace
+{
+private:
+    Board INITIAL;
+    int THREADS;
+    std::size_t MEMORY; // bytes of successors buffered before spilling
+    std::string work;   // scratch directory for layer and run files
+    std::atomic<int> files{0}; // scratch file counter
+    std::size_t total = 0;     // states in the layers of the current pass
+
+    std::string Scratch(const std::string &kind);
+
+    // expand one layer file; returns the sorted runs of its successors, and the
+    // solved states of the layer (in order) when goals is given
+    std::vector<std::string> Expand(const std::string &layer, std::size_t count,
+                                    std::vector<StateKey> *goals);
+    // breadth-first from start; returns the layer files, layer 0 included, and
+    // one sorted file of solved states per layer that has any when goals is given
+    std::vector<std::string> Layers(const std::string &start, std::size_t count,
+                                    std::vector<std::size_t> &counts, std::vector<std::string> *goals);
+
+public:
+    std::size_t STATES = 0;  // reachable states
+    std::size_t GOALS = 0;   // solved states among them
+    int DEPTH = 0;           // distance of the initial board, -1 if it cannot be solved
+    int FARTHEST = 0;        // largest distance to the goal
+    std::size_t LIMIT = 0;   // give up (Write returns false) past this many states; 0 = no limit
+
+    StateSpace(const Board &board, int threads, std::size_t memoryBytes)
+        : INITIAL(board), THREADS(threads), MEMORY(memoryBytes) {};
+
+    bool Write(const std::string &path); // enumerate and write the table, replacing path whole; false on I/O errors
+
+    static std::string CacheName(const Board &board); // states-<hash of the geometry>.bin
+};
+
+#endif
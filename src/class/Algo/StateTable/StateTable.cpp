@@ -0,0 +1,97 @@
+#include "StateTable.hpp"
+
+#include <algorithm>
+
+StateTable::StateTable(int words, std::size_t initialCapacity)
+{
+    this->words = words;
+    this->capacity = 1;
+    while (this->capacity < initialCapacity)
+        this->capacity <<= 1;
+    this->count = 0;
+    this->slots.assign(this->capacity * words, 0);
+    this->values.assign(this->capacity, 0);
+}
+
+std::size_t StateTable::Probe(const StateKey &key) const
+{
+    std::size_t mask = capacity - 1;
+    std::size_t slot = key.Hash() & mask;
+    while (true)
+    {
+        const std::uint64_t *s = &slots[slot * words];
+        if (s[0] == 0)
+            return slot;
+        bool match = true;
+        for (int i = 0; i < words; i++)
+            match &= s[i] == key.w[i];
+        if (match)
+            return slot;
+        slot = (slot + 1) & mask;
+    }
+}
+
+bool StateTable::Insert(const StateKey &key, std::uint32_t value)
+{
+    return Emplace(key, value).second;
+}
+
+std::pair<std::uint32_t *, bool> StateTable::Emplace(const StateKey &key, std::uint32_t value)
+{
+    std::size_t slot = Probe(key);
+    std::uint64_t *s = &slots[slot * words];
+    if (s[0] != 0) // occupied slot means the key is already there (keys never start with a zero word)
+        return {&values[slot], false};
+
+    for (int i = 0; i < words; i++)
+        s[i] = key.w[i];
+    values[slot] = value;
+    if (++count * 4 > capacity * 3) // keep load factor below 3/4
+    {
+        Grow();
+        slot = Probe(key);
+    }
+    return {&values[slot], true};
+}
+
+std::uint32_t *StateTable::Find(const StateKey &key)
+{
+    std::size_t slot = Probe(key);
+    return slots[slot * words] != 0 ? &values[slot] : nullptr;
+}
+
+bool StateTable::Contains(const StateKey &key) const
+{
+    return slots[Probe(key) * words] != 0;
+}
+
+void StateTable::Clear()
+{
+    std::fill(slots.begin(), slots.end(), 0);
+    std::fill(values.begin(), values.end(), 0);
+    count = 0;
+}
+
+void StateTable::Grow()
+{
+    std::vector<std::uint64_t> oldSlots;
+    std::vector<std::uint32_t> oldValues;
+    oldSlots.swap(slots);
+    oldValues.swap(values);
+    capacity <<= 1;
+    slots.assign(capacity * words, 0);
+    values.assign(capacity, 0);
+
+    for (std::size_t i = 0; i < oldValues.size(); i++)
+    {
+        if (oldSlots[i * words] == 0)
+            continue;
+        StateKey key;
+        for (int j = 0; j < words; j++)
+            key.w[j] = oldSlots[i * words + j];
+        std::size_t slot = Probe(key);
+        for (int j = 0; j < words; j++)
+            slots[slot * words + j] = key.w[j];
+        values[slot] = oldValues[i];
+    }
+}
@@ -0,0 +1,42 @@
+#ifndef __STATETABLE__
+#define __STATETABLE__
+
+#include "../../Board/StateKey.hpp"
+
+#include <cstddef>
+#include <cstdint>
+#include <utility>
+#include <vector>
+
+// Open-addressing map from packed states to a 32-bit value (linear probing,
+// power-of-two capacity). Only the words a board actually needs are stored per
+// slot, and lookups and inserts never allocate except when the table doubles.
+class StateTable
+{
+private:
+    int words;                        // 64-bit words per key
+    std::size_t capacity;             // slots, always a power of two
+    std::size_t count;                // occupied slots
+    std::vector<std::uint64_t> slots; // capacity * words; a zero first word marks an empty slot
+    std::vector<std::uint32_t> values; // capacity
+
+    std::size_t Probe(const StateKey &key) const; // slot holding key, or the empty slot where it belongs
+    void Grow();
+
+public:
+    StateTable(int words, std::size_t initialCapacity = 1 << 12);
+
+    bool Insert(const StateKey &key, std::uint32_t value = 0); // true if key was not present yet
+
+    // value slot for key, inserting it with value if absent; .second is true on insert.
+    // The pointer stays valid until the next insertion.
+    std::pair<std::uint32_t *, bool> Emplace(const StateKey &key, std::uint32_t value);
+    std::uint32_t *Find(const StateKey &key); // nullptr if absent
+    bool Contains(const StateKey &key) const;
+    void Clear();
+
+    std::size_t Size() const { return count; }
+    std::size_t Bytes() const { return slots.size() * sizeof(std::uint64_t) + values.size() * sizeof(std::uint32_t); }
+};
+
+#endif
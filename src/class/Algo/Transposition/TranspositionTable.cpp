@@ -0,0 +1,80 @@
+#include "TranspositionTable.hpp"
+
+#include <algorithm>
+
+TranspositionTable::TranspositionTable(std::size_t bytes)
+{
+    std::size_t buckets = 1;
+    while (buckets * 2 * WAYS * sizeof(Entry) <= bytes)
+        buckets *= 2;
+    this->buckets = buckets;
+    buckets = std::min(buckets, FIRST_BUCKETS);
+    this->entries.assign(buckets * WAYS, Entry{});
+    this->mask = buckets - 1;
+    this->used = 0;
+    this->replacements = 0;
+}
+
+void TranspositionTable::Clear()
+{
+    std::fill(this->entries.begin(), this->entries.end(), Entry{});
+    this->used = 0;
+    this->replacements = 0;
+}
+
+TranspositionTable::Entry *TranspositionTable::Find(const StateKey &key)
+{
+    Entry *bucket = &entries[(key.Hash() & mask) * WAYS];
+    for (int i = 0; i < WAYS; i++)
+    {
+        if (bucket[i].stamp != 0 && bucket[i].key == key)
+            return &bucket[i];
+    }
+    return nullptr;
+}
+
+void TranspositionTable::Grow()
+{
+    std::vector<Entry> old(this->entries.size() * 2, Entry{});
+    old.swap(this->entries);
+    this->mask = this->mask * 2 + 1;
+    for (const Entry &entry : old)
+    {
+        if (entry.stamp == 0)
+            continue;
+        Entry *bucket = &entries[(entry.key.Hash() & mask) * WAYS];
+        while (bucket->stamp != 0)
+            bucket++;
+        *bucket = entry;
+    }
+}
+
+TranspositionTable::Entry *TranspositionTable::Store(const StateKey &key, std::uint32_t stamp)
+{
+    if (used >= entries.size() / 4 * 3 && mask + 1 < buckets)
+        Grow();
+    Entry *bucket = &entries[(key.Hash() & mask) * WAYS];
+    Entry *victim = nullptr;
+    for (int i = 0; i < WAYS; i++)
+    {
+        Entry &entry = bucket[i];
+        if (entry.stamp != 0 && entry.key == key)
+            return &entry;
+        if (entry.stamp == 0)
+        {
+            if (victim == nullptr || victim->stamp != 0)
+                victim = &entry;
+        }
+        else if (victim == nullptr ||
+                 (victim->stamp != 0 && (entry.stamp < victim->stamp ||
+                                         (entry.stamp == victim->stamp && entry.g > victim->g))))
+            victim = &entry;
+    }
+
+    if (victim->stamp != 0)
+        replacements++;
+    else
+        used++;
+    *victim = Entry{key, 0, UINT16_MAX, stamp};
+    return victim;
+}
@@ -0,0 +1,53 @@
+#ifndef __TRANSPOSITIONTABLE__
+#define __TRANSPOSITIONTABLE__
+
+#include "../../Board/StateKey.hpp"
+
+#include <cstddef>
+#include <cstdint>
+#include <vector>
+
+// Fixed-size table for IDA*. Each entry remembers, for one state,
+//  - bound : a proven lower bound on its cost to the goal, kept across iterations
+//  - g     : the cheapest g it was reached with during iteration `stamp`
+// Entries live in 4-way buckets. A full bucket gives up the entry from the
+// oldest iteration, and among those the deepest one (largest g), since
+// entries near the root prune the largest subtrees. The table starts small and
+// doubles as it fills, so a small search never touches the whole budget.
+class TranspositionTable
+{
+public:
+    static const std::uint16_t DEAD = UINT16_MAX; // bound of a state proven unsolvable
+
+    struct Entry
+    {
+        StateKey key;
+        std::uint16_t bound;
+        std::uint16_t g;
+        std::uint32_t stamp; // 0 = empty; one per iteration, each raising the int threshold, so it cannot wrap
+    };
+
+    TranspositionTable(std::size_t bytes); // memory budget; rounded down to a power-of-two number of buckets
+
+    Entry *Find(const StateKey &key);
+    Entry *Store(const StateKey &key, std::uint32_t stamp); // existing entry or a freshly replaced one; may move entries
+    void Clear();                                           // forget everything, keeping the memory
+
+    std::size_t Bytes() const { return entries.size() * sizeof(Entry); }
+    std::size_t Size() const { return used; } // occupied entries
+    std::size_t Replacements() const { return replacements; }
+
+private:
+    static const int WAYS = 4;
+    static const std::size_t FIRST_BUCKETS = 4096; // 512 KB to start with
+
+    std::vector<Entry> entries;
+    std::size_t mask;    // buckets - 1
+    std::size_t buckets; // most the budget allows
+    std::size_t used;
+    std::size_t replacements;
+
+    void Grow(); // double the buckets; each old bucket splits into two, so nothing is lost
+};
+
+#endif
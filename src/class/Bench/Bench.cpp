@@ -0,0 +1,391 @@
+#include "Bench.hpp"
+#include "../Algo/Heuristics/Heuristics.hpp"
+#include "../Algo/StateSpace/DistanceTable.hpp"
+#include "../Algo/StateSpace/StateSpace.hpp"
+#include "../Protocol/Protocol.hpp"
+#include "../Storage/PuzzleBatch.hpp"
+
+#include <algorithm>
+#include <cctype>
+#include <cstdio>
+#include <filesystem>
+#include <fstream>
+#include <iomanip>
+#include <map>
+#include <optional>
+#include <sstream>
+#include <system_error>
+#include <thread>
+
+#ifdef _WIN32
+#define popen _popen
+#define pclose _pclose
+#endif
+
+namespace fs = std::filesystem;
+
+void Bench::Report(std::ostream &out, const Sample &sample)
+{
+    out << "RESULT " << sample.status << " " << std::fixed << std::setprecision(3) << sample.ms << " "
+        << sample.nodes << " " << sample.length << " " << sample.cost << " " << sample.peakOpen << " "
+        << sample.peakKB << "\n";
+    out.flush();
+}
+
+std::vector<std::pair<std::string, std::string>> Bench::Problems()
+{
+    // (name, source): a folder, or <file.rhb>@<index> named after the folder it was packed from
+    std::vector<std::pair<std::string, std::string>> folders;
+    for (const std::string &root : options.roots)
+    {
+        std::error_code error;
+        if (fs::is_regular_file(fs::path(root) / "problem.txt", error))
+        {
+            folders.push_back({fs::path(root).filename().string(), root});
+            continue;
+        }
+        PuzzleBatch batch;
+        if (fs::path(root).extension() == ".rhb" && batch.Open(root))
+        {
+            for (std::size_t index = 0; index < batch.Size(); index++)
+                folders.push_back({fs::path(batch.Name(index)).filename().string(), root + "@" + std::to_string(index)});
+            continue;
+        }
+        std::vector<std::string> children;
+        for (const auto &entry : fs::directory_iterator(root, error))
+        {
+            if (fs::is_regular_file(entry.path() / "problem.txt", error))
+                children.push_back(entry.path().string());
+        }
+        std::sort(children.begin(), children.end());
+        for (const std::string &child : children)
+            folders.push_back({fs::path(child).filename().string(), child});
+    }
+
+    // test/ keeps one copy of each board per algorithm: measure each board once, named
+    // after what its folders' names have in common ("tc2 - astar", "tc2 - ucs" -> tc2)
+    std::map<std::string, std::size_t> seen;
+    std::vector<std::pair<std::string, std::string>> problems;
+    for (const auto &[name, folder] : folders)
+    {
+        std::string board;
+        try
+        {
+            Board parsed = PuzzleBatch::Load(folder);
+            std::ostringstream text;
+            text << parsed.N << ' ' << parsed.M << '\n';
+            parsed.PrintBoard(text);
+            board = text.str();
+        }
+        catch (const std::exception &)
+        {
+            board = folder; // unreadable: measured on its own, and reported as an error
+        }
+
+        auto [found, inserted] = seen.emplace(board, problems.size());
+        if (inserted)
+        {
+            problems.push_back({name, folder});
+            continue;
+        }
+        std::string &shared = problems[found->second].first;
+        std::size_t common = 0;
+        while (common < shared.size() && common < name.size() && shared[common] == name[common])
+            common++;
+        shared.resize(common);
+    }
+
+    for (auto &problem : problems)
+    {
+        std::string name;
+        for (char c : problem.first)
+        {
+            if (std::isalnum(static_cast<unsigned char>(c)) || c == '-' || c == '_')
+                name += c;
+        }
+        while (!name.empty() && (name.back() == '-' || name.back() == '_'))
+            name.pop_back();
+        problem.first = name.empty() ? "board" : name;
+    }
+    return problems;
+}
+
+void Bench::Generate(const std::vector<std::pair<std::string, std::string>> &problems)
+{
+    // the board farthest from the goal among everything else reachable from each
+    // problem; written once, so later runs measure the same corpus
+    for (const auto &[name, folder] : problems)
+    {
+        fs::path target = fs::path(options.corpus) / (name + "-far");
+        std::error_code error;
+        if (fs::exists(target / "problem.txt", error))
+            continue;
+
+        std::optional<Board> read;
+        try
+        {
+            read.emplace(PuzzleBatch::Load(folder));
+        }
+        catch (const std::exception &)
+        {
+            continue; // a broken problem is reported when it is measured
+        }
+        Board &board = *read;
+        fs::create_directories(options.corpus, error);
+        std::string scratch = (fs::path(options.corpus) / (name + ".states")).string();
+        StateSpace space(board, std::max(1u, std::thread::hardware_concurrency()), std::size_t(256) << 20);
+        space.LIMIT = std::size_t(1) << 24;
+        if (space.Write(scratch))
+        {
+            DistanceTable table;
+            table.Open(scratch);
+            std::size_t farthest = table.Size();
+            StateKey start = board.Pack();
+            for (std::size_t state = 0; state < table.Size(); state++)
+            {
+                int distance = table.Distance(state);
+                if (distance != DistanceTable::UNSOLVABLE && !(table.Key(state) == start) &&
+                    (farthest == table.Size() || distance > table.Distance(farthest)))
+                    farthest = state;
+            }
+            if (farthest != table.Size())
+            {
+                board.Load(table.Key(farthest));
+                fs::create_directories(target, error);
+                std::ofstream out(target / "problem.txt");
+                Protocol::WriteProblem(out, board);
+            }
+        }
+        fs::remove(scratch, error);
+    }
+}
+
+Bench::Sample Bench::Spawn(const std::string &folder, const std::string &algorithm, const std::string &heuristic)
+{
+    auto quote = [](const std::string &text)
+    { return "\"" + text + "\""; };
+    std::string command = quote(options.self) + " " + quote(folder) + " " + quote(algorithm);
+    if (!heuristic.empty())
+        command += " " + quote(heuristic);
+    command += " --measure --cost " + options.cost + " --timeout " + std::to_string(options.timeout);
+#ifdef _WIN32
+    command = "\"" + command + "\""; // cmd /c drops the outer pair of quotes
+#endif
+
+    Sample sample;
+    FILE *pipe = popen(command.c_str(), "r");
+    if (pipe == nullptr)
+        return sample;
+    char buffer[512];
+    while (std::fgets(buffer, sizeof(buffer), pipe) != nullptr)
+    {
+        std::istringstream line(buffer);
+        std::string record;
+        line >> record;
+        if (record == "RESULT")
+            line >> sample.status >> sample.ms >> sample.nodes >> sample.length >> sample.cost >> sample.peakOpen >> sample.peakKB;
+    }
+    pclose(pipe);
+    return sample;
+}
+
+Bench::Row Bench::Measure(const std::string &name, const std::string &folder, const std::string &algorithm, const std::string &heuristic)
+{
+    Row row;
+    row.problem = name;
+    row.algorithm = algorithm;
+    row.heuristic = heuristic.empty() ? "-" : heuristic;
+    row.cost = options.cost;
+    std::vector<double> times;
+    Sample last;
+    for (int run = 0; run < options.warmup + options.repeats; run++)
+    {
+        last = Spawn(folder, algorithm, heuristic);
+        if (last.status != "SOLVED" && last.status != "NOSOLUTION")
+            break; // a timeout or crash will not get better by repeating it
+        if (run >= options.warmup)
+            times.push_back(last.ms);
+        row.peakKB = std::max(row.peakKB, last.peakKB);
+    }
+
+    row.status = last.status;
+    row.nodes = last.nodes;
+    row.peakOpen = last.peakOpen;
+    row.length = last.length;
+    row.pathCost = last.cost;
+    if (!times.empty())
+    {
+        std::sort(times.begin(), times.end());
+        row.medianMs = times[times.size() / 2];
+        row.minMs = times.front();
+        row.nodesPerSecond = row.nodes / std::max(row.medianMs / 1000, 1e-6);
+    }
+    return row;
+}
+
+bool Bench::Write(const std::string &path, const std::vector<Row> &rows)
+{
+    std::error_code error;
+    if (fs::path(path).has_parent_path())
+        fs::create_directories(fs::path(path).parent_path(), error);
+    std::ofstream out(path);
+    out << "problem\talgorithm\theuristic\tcost_model\tstatus\tmedian_ms\tmin_ms\tnodes\tnodes_per_s\t"
+           "peak_rss_kb\tpeak_open\tlength\tcost\n";
+    out << std::fixed << std::setprecision(3);
+    for (const Row &row : rows)
+    {
+        out << row.problem << '\t' << row.algorithm << '\t' << row.heuristic << '\t' << row.cost << '\t'
+            << row.status << '\t' << row.medianMs << '\t' << row.minMs << '\t' << row.nodes << '\t'
+            << std::setprecision(0) << row.nodesPerSecond << std::setprecision(3) << '\t' << row.peakKB << '\t'
+            << row.peakOpen << '\t' << row.length << '\t' << row.pathCost << '\n';
+    }
+    return static_cast<bool>(out);
+}
+
+std::map<std::string, Bench::Row> Bench::Read(const std::string &path)
+{
+    std::map<std::string, Row> rows;
+    std::ifstream in(path);
+    std::string line;
+    std::getline(in, line); // header
+    while (std::getline(in, line))
+    {
+        std::vector<std::string> fields;
+        std::stringstream split(line);
+        for (std::string field; std::getline(split, field, '\t');)
+            fields.push_back(field);
+        if (fields.size() < 13)
+            continue;
+
+        Row row{fields[0], fields[1], fields[2], fields[3], fields[4]};
+        row.medianMs = std::stod(fields[5]);
+        row.minMs = std::stod(fields[6]);
+        row.nodes = std::stoll(fields[7]);
+        row.nodesPerSecond = std::stod(fields[8]);
+        row.peakKB = std::stoll(fields[9]);
+        row.peakOpen = std::stoll(fields[10]);
+        row.length = std::stoi(fields[11]);
+        row.pathCost = std::stoi(fields[12]);
+        rows[row.problem + '\t' + row.algorithm + '\t' + row.heuristic + '\t' + row.cost] = row;
+    }
+    return rows;
+}
+
+int Bench::Compare(const std::vector<Row> &rows, std::ostream &out) const
+{
+    std::map<std::string, Row> baseline = Read(options.baseline);
+    if (baseline.empty())
+    {
+        out << "[BENCH] no baseline rows in " << options.baseline << "\n";
+        return 0;
+    }
+
+    int regressions = 0, improvements = 0;
+    for (const Row &row : rows)
+    {
+        std::string name = row.problem + " " + row.algorithm + " " + row.heuristic;
+        auto found = baseline.find(row.problem + '\t' + row.algorithm + '\t' + row.heuristic + '\t' + row.cost);
+        if (found == baseline.end())
+        {
+            out << "  new         " << name << "\n";
+            continue;
+        }
+        const Row &before = found->second;
+
+        std::vector<std::string> worse, better;
+        if (row.status != before.status)
+            (before.status == "SOLVED" ? worse : better).push_back(before.status + " -> " + row.status);
+        if (row.status == "SOLVED" && before.status == "SOLVED")
+        {
+            if (row.pathCost != before.pathCost)
+                (row.pathCost > before.pathCost ? worse : better).push_back("cost " + std::to_string(before.pathCost) + " -> " + std::to_string(row.pathCost));
+            if (row.nodes > before.nodes * (1 + options.tolerance))
+                worse.push_back("nodes " + std::to_string(before.nodes) + " -> " + std::to_string(row.nodes));
+            else if (row.nodes < before.nodes * (1 - options.tolerance))
+                better.push_back("nodes " + std::to_string(before.nodes) + " -> " + std::to_string(row.nodes));
+
+            // slower only if even the fastest run lost to the old median (faster: the other
+            // way round), and never by a couple of milliseconds of process start-up noise
+            std::ostringstream time;
+            time << std::fixed << std::setprecision(1) << "median " << before.medianMs << " -> " << row.medianMs << " ms";
+            if (row.minMs > before.medianMs * (1 + options.tolerance) && row.minMs - before.medianMs > 2)
+                worse.push_back(time.str());
+            else if (row.medianMs < before.minMs * (1 - options.tolerance) && before.minMs - row.medianMs > 2)
+                better.push_back(time.str());
+        }
+
+        auto list = [&](const char *label, const std::vector<std::string> &changes)
+        {
+            out << label << name << ":";
+            for (const std::string &change : changes)
+                out << " " << change << ";";
+            out << "\n";
+        };
+        if (!worse.empty())
+        {
+            regressions++;
+            list("  REGRESSION  ", worse);
+        }
+        else if (!better.empty())
+        {
+            improvements++;
+            list("  improved    ", better);
+        }
+    }
+    out << "[BENCH] vs " << options.baseline << ": " << regressions << " regressed, " << improvements
+        << " improved, tolerance " << options.tolerance * 100 << "%\n";
+    return regressions;
+}
+
+int Bench::Run(std::ostream &out)
+{
+    std::vector<std::pair<std::string, std::string>> problems = Problems();
+    Generate(problems);
+    std::error_code error;
+    if (fs::is_directory(options.corpus, error))
+    {
+        options.roots.push_back(options.corpus);
+        problems = Problems();
+    }
+    if (problems.empty())
+    {
+        out << "[BENCH] no problem.txt found\n";
+        return 1;
+    }
+
+    std::vector<std::pair<std::string, std::string>> cases = {{"UCS", ""}, {"BIDI", ""}};
+    for (const char *algorithm : {"A*", "GBFS", "IDA*"})
+    {
+        for (const Heuristics::Entry &entry : Heuristics::Registry())
+        {
+            if (std::string(entry.name) != "ZERO")
+                cases.push_back({algorithm, entry.name});
+        }
+    }
+
+    out << "[BENCH] " << problems.size() << " boards x " << cases.size() << " cases, " << options.warmup
+        << " warmup + " << options.repeats << " timed runs each, cost " << options.cost << "\n";
+    std::vector<Row> rows;
+    for (const auto &[name, folder] : problems)
+    {
+        for (const auto &[algorithm, heuristic] : cases)
+        {
+            Row row = Measure(name, folder, algorithm, heuristic);
+            rows.push_back(row);
+            out << std::fixed << std::setprecision(2) << "  " << std::left << std::setw(12) << name << " "
+                << std::setw(5) << algorithm << " " << std::setw(9) << row.heuristic << std::right << " "
+                << std::setw(10) << row.status << " " << std::setw(9) << row.medianMs << " ms "
+                << std::setw(9) << row.nodes << " nodes " << std::setw(11) << std::setprecision(0)
+                << row.nodesPerSecond << " nodes/s " << std::setw(7) << row.peakKB << " KB open "
+                << std::setw(7) << row.peakOpen << " length " << row.length << "\n";
+        }
+    }
+
+    if (!Write(options.save, rows))
+        out << "[BENCH] cannot write " << options.save << "\n";
+    else
+        out << "[BENCH] wrote " << options.save << "\n";
+    if (!options.baseline.empty())
+        return Compare(rows, out) == 0 ? 0 : 3;
+    return 0;
+}
@@ -0,0 +1,74 @@
+#ifndef __BENCH__
+#define __BENCH__
+
+#include <cstddef>
+#include <map>
+#include <ostream>
+#include <string>
+#include <vector>
+
+// main.exe --bench: every problem folder under the given directories, plus a
+// generated corpus of harder boards, through UCS, BIDI, and A* / GBFS / IDA* with
+// every heuristic. Each run is a fresh main.exe <folder> ... --measure process, so
+// peak memory belongs to that run alone; the first runs of a case are warmups
+// (they also build the PDB and TABLE caches) and the rest are timed.
+//
+// Results go to a TSV file, one row per problem / algorithm / heuristic. Given a
+// baseline TSV from an earlier run, the rows are compared and regressions (longer
+// solutions, more nodes, slower beyond the tolerance, lost solves) are listed.
+class Bench
+{
+public:
+    struct Options
+    {
+        std::vector<std::string> roots;        // folders to search for problem.txt, or .rhb batch files
+        std::string self;                      // path of this executable
+        std::string corpus = "bench/corpus";   // generated boards are written here once
+        std::string save = "bench/latest.tsv"; // results
+        std::string baseline;                  // compare with this TSV, if set
+        std::string cost = "MOVES";
+        int warmup = 1, repeats = 5;
+        long long timeout = 10000; // ms per run
+        double tolerance = 0.10;   // relative slowdown that counts as a regression
+    };
+
+    // one line written by --measure
+    struct Sample
+    {
+        std::string status = "ERROR"; // SOLVED, NOSOLUTION, TIMEOUT or ERROR
+        double ms = 0;
+        long long nodes = 0, peakOpen = 0, peakKB = 0;
+        int length = -1, cost = -1;
+    };
+
+    struct Row
+    {
+        std::string problem, algorithm, heuristic, cost;
+        std::string status;
+        double medianMs = 0, minMs = 0;
+        long long nodes = 0, peakOpen = 0, peakKB = 0;
+        double nodesPerSecond = 0;
+        int length = -1, pathCost = -1;
+    };
+
+private:
+    Options options;
+
+    std::vector<std::pair<std::string, std::string>> Problems(); // (name, folder), distinct boards only
+    void Generate(const std::vector<std::pair<std::string, std::string>> &problems);
+    Sample Spawn(const std::string &folder, const std::string &algorithm, const std::string &heuristic);
+    Row Measure(const std::string &name, const std::string &folder, const std::string &algorithm, const std::string &heuristic);
+
+    static bool Write(const std::string &path, const std::vector<Row> &rows);
+    static std::map<std::string, Row> Read(const std::string &path); // keyed by problem / algorithm / heuristic / cost
+    int Compare(const std::vector<Row> &rows, std::ostream &out) const; // number of regressions
+
+public:
+    Bench(const Options &options) : options(options) {};
+
+    int Run(std::ostream &out); // 0, or 3 when the baseline comparison found regressions
+
+    static void Report(std::ostream &out, const Sample &sample); // the --measure line
+};
+
+#endif
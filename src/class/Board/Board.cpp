@@ -1,101 +1,60 @@
 #include "Board.hpp"
 
-#include <functional>
+#include <algorithm>
+#include <utility>
 #include <iostream>
+#include <stdexcept>
 
 Board::Board(std::vector<std::string> INPUT, int N, int M)
 {
-    this->N = N;
-    this->M = M;
-    std::vector<std::vector<char>> DATA(N, std::vector<char>(M));
-
-    // Generate DATA[][]
-    // Recursive rotate function: rotates DATA 'times' times 90 deg clockwise
-    std::function<void(int)> rotateDATA = [&](int times)
-    {
-        if (times <= 0)
-            return;
-
-        int n = DATA.size();
-        int m = DATA[0].size();
-
-        std::vector<std::vector<char>> rotated(m, std::vector<char>(n));
-        for (int i = 0; i < n; i++)
-        {
-            for (int j = 0; j < m; j++)
-            {
-                rotated[j][n - i - 1] = DATA[i][j];
-            }
-        }
-        DATA = rotated;
-        std::swap(this->N, this->M);
-
-        rotateDATA(times - 1);
-    };
-
-    // Case 1 : exit is at the top / bottom
+    // Where the grid sits in INPUT and how many quarter turns clockwise bring the
+    // exit to the right: a K line on top (1) or below (3), or a K column on the left (2)
+    int top = 0, left = 0, turns = 0;
     if (INPUT.size() > static_cast<std::size_t>(N))
     {
-        // Case 1.1 : exit is at the top
-        if (INPUT[0].find('K') != std::string::npos)
-        {
-            for (int i = 1; i <= N; i++)
-            {
-                for (int j = 0; j < M; j++)
-                {
-                    DATA[i - 1][j] = INPUT[i][j];
-                }
-            }
-            // rotate 90 degree clockwise
-            rotateDATA(1);
-        }
-        // Case 2.2 : exit is at the bottom
-        else
-        {
-            for (int i = 0; i < N; i++)
-            {
-                for (int j = 0; j < M; j++)
-                {
-                    DATA[i][j] = INPUT[i][j];
-                }
-            }
-            // rotate 270 degree clockwise
-            rotateDATA(3);
-        }
+        bool above = INPUT[0].find('K') != std::string::npos;
+        top = above ? 1 : 0;
+        turns = above ? 1 : 3;
     }
-    // Case 2 : exit is at the left / right
-    else
+    else if (INPUT[0].size() > static_cast<std::size_t>(M))
     {
-        // Case 2.1 : exit is at the left
-        if (INPUT[0].size() > static_cast<std::size_t>(M))
-        {
-            for (int i = 0; i < N; i++)
-            {
-                for (int j = 1; j <= M; j++)
-                {
-                    DATA[i][j - 1] = INPUT[i][j];
-                }
-            }
-            rotateDATA(2);
-        }
-        // Case 2.2 (default) : exit is at the right
-        else
+        left = 1;
+        turns = 2;
+    }
+
+    // every cell goes straight to its place in the turned grid
+    this->N = turns % 2 == 0 ? N : M;
+    this->M = turns % 2 == 0 ? M : N;
+    std::vector<std::vector<char>> DATA(this->N, std::vector<char>(this->M, '.'));
+    for (int i = 0; i < N; i++)
+    {
+        const std::string &row = INPUT[top + i];
+        for (int j = 0; j < M && left + j < static_cast<int>(row.size()); j++)
         {
-            for (int i = 0; i < N; i++)
+            char cell = row[left + j];
+            switch (turns)
             {
-                for (int j = 0; j < M; j++)
-                {
-                    DATA[i][j] = INPUT[i][j];
-                }
+            case 0:
+                DATA[i][j] = cell;
+                break;
+            case 1:
+                DATA[j][N - 1 - i] = cell;
+                break;
+            case 2:
+                DATA[N - 1 - i][M - 1 - j] = cell;
+                break;
+            default:
+                DATA[M - 1 - j][i] = cell;
+                break;
             }
         }
     }
 
-    // Turn DATA[][] into map<char, Piece>
-    std::vector<std::vector<bool>> checked(N, std::vector<bool>(M));
-    for (int i = 0; i < N; i++)
+    // Turn DATA[][] into Pieces
+    std::vector<std::vector<bool>> checked(this->N, std::vector<bool>(this->M));
+    for (int i = 0; i < this->N; i++)
     {
-        for (int j = 0; j < M; j++)
+        for (int j = 0; j < this->M; j++)
         {
             if (DATA[i][j] == '.' || checked[i][j])
                 continue;
@@ -104,106 +63,163 @@ Board::Board(std::vector<std::string> INPUT, int N, int M)
             char id = DATA[i][j];
             int length = 1;
             std::pair<int, int> pos = {i, j};
-            bool isVertical = (i + 1 < N && DATA[i + 1][j] == id);
+            bool isVertical = (i + 1 < this->N && DATA[i + 1][j] == id);
 
             if (isVertical)
             {
-                while (i + length < N && DATA[i + length][j] == id)
+                while (i + length < this->N && DATA[i + length][j] == id)
                     checked[i + length++][j] = true;
             }
             else
             {
-                while (j + length < M && DATA[i][j + length] == id)
+                while (j + length < this->M && DATA[i][j + length] == id)
                     checked[i][j + length++] = true;
             }
 
-            this->Pieces.insert({id, Piece(id, length, isVertical, pos)});
+            // first occurrence of an id wins
+            bool seen = false;
+            for (const Piece &piece : this->Pieces)
+                seen |= piece.id == id;
+            if (!seen)
+                this->Pieces.push_back(Piece(id, length, isVertical, pos));
         }
     }
+    Init();
 }
 
-std::vector<std::shared_ptr<Board>> Board::GenerateSuccessors() const
+Board::Board(int N, int M, std::vector<Piece> pieces) : N(N), M(M), Pieces(std::move(pieces))
 {
-    // Reconstruct 2D board
-    std::vector<std::vector<char>> board(this->N, std::vector<char>(this->M, '.'));
-    for (const auto &[id, piece] : this->Pieces)
+    Init();
+}
+
+void Board::Init()
+{
+    std::sort(this->Pieces.begin(), this->Pieces.end(), [](const Piece &a, const Piece &b)
+              { return a.id < b.id; });
+
+    this->PRIMARY = -1;
+    for (std::size_t i = 0; i < this->Pieces.size(); i++)
     {
-        for (int i = 0; i < piece.length; i++)
-        {
-            if (piece.isVertical)
-                board[piece.pos.first + i][piece.pos.second] = id;
-            else
-                board[piece.pos.first][piece.pos.second + i] = id;
-        }
+        if (this->Pieces[i].id == 'P')
+            this->PRIMARY = static_cast<int>(i);
     }
+    if (this->PRIMARY < 0)
+        throw std::invalid_argument("Board has no primary piece 'P'");
+    if (this->N > 64 || this->M > 64)
+        throw std::length_error("Board is larger than 64x64");
+
+    // offsets are stored + 1, so they range over 1..max(N, M)
+    this->KEY_BITS = 1;
+    while ((1 << this->KEY_BITS) <= std::max(this->N, this->M))
+        this->KEY_BITS++;
+    this->perWord = 64 / this->KEY_BITS;
+    this->KEY_WORDS = (static_cast<int>(this->Pieces.size()) + perWord - 1) / perWord;
+    if (this->KEY_WORDS > StateKey::MAX_WORDS)
+        throw std::length_error("Board has too many pieces to pack into a StateKey");
+
+    StateKey initial;
+    for (std::size_t i = 0; i < this->Pieces.size(); i++)
+    {
+        const Piece &piece = this->Pieces[i];
+        std::uint64_t offset = (piece.isVertical ? piece.pos.first : piece.pos.second) + 1;
+        initial.w[i / perWord] |= offset << ((i % perWord) * this->KEY_BITS);
+    }
+    Load(initial);
+}
 
-    std::vector<std::shared_ptr<Board>> successors;
-
-    for (const auto &[id, piece] : this->Pieces)
+void Board::Occupy(const Piece &piece)
+{
+    for (int i = 0; i < piece.length; i++)
     {
-        if (piece.isVertical)
-        {
-            for (int i = piece.pos.first - 1; i >= 0; i--)
-            {
-                if (board[i][piece.pos.second] != '.')
-                    break;
+        int r = piece.pos.first + (piece.isVertical ? i : 0);
+        int c = piece.pos.second + (piece.isVertical ? 0 : i);
+        this->rows[r] |= 1ULL << c;
+        this->cols[c] |= 1ULL << r;
+    }
+}
 
-                auto newBoard = std::make_shared<Board>(*this);
-                newBoard->Pieces.at(id).pos.first = i;
-                successors.push_back(newBoard);
-            }
-            for (int i = piece.pos.first + piece.length; i < N; i++)
-            {
-                if (board[i][piece.pos.second] != '.')
-                    break;
+void Board::Vacate(const Piece &piece)
+{
+    for (int i = 0; i < piece.length; i++)
+    {
+        int r = piece.pos.first + (piece.isVertical ? i : 0);
+        int c = piece.pos.second + (piece.isVertical ? 0 : i);
+        this->rows[r] &= ~(1ULL << c);
+        this->cols[c] &= ~(1ULL << r);
+    }
+}
 
-                auto newBoard = std::make_shared<Board>(*this);
-                newBoard->Pieces.at(id).pos.first = i - piece.length + 1;
-                successors.push_back(newBoard);
-            }
-        }
+void Board::Load(const StateKey &key)
+{
+    this->key = key;
+    std::uint64_t mask = (1ULL << this->KEY_BITS) - 1;
+    for (std::size_t i = 0; i < this->Pieces.size(); i++)
+    {
+        Piece &piece = this->Pieces[i];
+        int offset = static_cast<int>((key.w[i / perWord] >> ((i % perWord) * this->KEY_BITS)) & mask) - 1;
+        if (piece.isVertical)
+            piece.pos.first = offset;
         else
-        {
-            for (int j = piece.pos.second - 1; j >= 0; j--)
-            {
-                if (board[piece.pos.first][j] != '.')
-                    break;
-
-                auto newBoard = std::make_shared<Board>(*this);
-                newBoard->Pieces.at(id).pos.second = j;
-                successors.push_back(newBoard);
-            }
-            for (int j = piece.pos.second + piece.length; j < M; j++)
-            {
-                if (board[piece.pos.first][j] != '.')
-                    break;
-
-                auto newBoard = std::make_shared<Board>(*this);
-                newBoard->Pieces.at(id).pos.second = j - piece.length + 1;
-                successors.push_back(newBoard);
-            }
-        }
+            piece.pos.second = offset;
     }
 
-    return successors;
+    this->rows.assign(this->N, 0);
+    this->cols.assign(this->M, 0);
+    for (const Piece &piece : this->Pieces)
+        Occupy(piece);
 }
 
-std::string Board::Serialize() const
+void Board::GenerateMoves(std::vector<Move> &moves) const
 {
-    std::string key;
-    for (const auto &[id, piece] : this->Pieces)
+    moves.clear();
+    for (std::size_t index = 0; index < this->Pieces.size(); index++)
     {
-        const Piece &p = piece;
-        key += p.id;
-        key += std::to_string(p.pos.first) + "," + std::to_string(p.pos.second) + ",";
-        key += (p.isVertical ? "V" : "H") + std::to_string(p.length) + ";";
+        const Piece &piece = this->Pieces[index];
+
+        // the piece's line as a bitmask, and its span along that line
+        std::uint64_t line = piece.isVertical ? this->cols[piece.pos.second] : this->rows[piece.pos.first];
+        int start = piece.isVertical ? piece.pos.first : piece.pos.second;
+        int end = start + piece.length; // one past the piece
+        int size = piece.isVertical ? this->N : this->M;
+
+        // free cells towards 0: up to the nearest occupied cell below start
+        std::uint64_t before = line & ((1ULL << start) - 1);
+        int back = before ? start - (63 - __builtin_clzll(before)) - 1 : start;
+
+        // free cells towards size: up to the nearest occupied cell from end
+        std::uint64_t after = end < 64 ? line >> end : 0;
+        int forward = after ? __builtin_ctzll(after) : size - end;
+
+        for (int d = 1; d <= back; d++)
+            moves.push_back({static_cast<std::uint8_t>(index), static_cast<std::int8_t>(-d)});
+        for (int d = 1; d <= forward; d++)
+            moves.push_back({static_cast<std::uint8_t>(index), static_cast<std::int8_t>(d)});
     }
-    return key;
 }
 
-bool Board::IsSolved()
+void Board::Apply(const Move &move)
+{
+    Piece &piece = this->Pieces[move.piece];
+    Vacate(piece);
+    if (piece.isVertical)
+        piece.pos.first += move.delta;
+    else
+        piece.pos.second += move.delta;
+    Occupy(piece);
+
+    // offsets never leave 1..max(N, M), so adding the signed delta cannot carry into a neighbour
+    int shift = (move.piece % perWord) * this->KEY_BITS;
+    this->key.w[move.piece / perWord] += static_cast<std::uint64_t>(static_cast<std::int64_t>(move.delta)) << shift;
+}
+
+void Board::Undo(const Move &move)
+{
+    Apply(move.Inverse());
+}
+
+bool Board::IsSolved() const
 {
-    Piece primary = this->Pieces.at('P');
+    const Piece &primary = this->Pieces[this->PRIMARY];
     return primary.pos.second + primary.length == this->M;
 }
 
@@ -211,14 +227,14 @@ void Board::PrintBoard(std::ostream &out) const
 {
     std::vector<std::vector<char>> board(this->N, std::vector<char>(this->M, '.'));
 
-    for (const auto &[id, piece] : this->Pieces)
+    for (const Piece &piece : this->Pieces)
     {
         for (int i = 0; i < piece.length; i++)
         {
             if (piece.isVertical)
-                board[piece.pos.first + i][piece.pos.second] = id;
+                board[piece.pos.first + i][piece.pos.second] = piece.id;
             else
-                board[piece.pos.first][piece.pos.second + i] = id;
+                board[piece.pos.first][piece.pos.second + i] = piece.id;
         }
     }
 
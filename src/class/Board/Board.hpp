@@ -1,25 +1,47 @@
 #ifndef __BOARD__
 #define __BOARD__
 
+#include "Move.hpp"
 #include "Piece.hpp"
+#include "StateKey.hpp"
 
-#include <map>
-#include <memory>
+#include <cstdint>
+#include <ostream>
 #include <string>
 #include <vector>
 
 class Board
 {
 public:
-    int N, M;                     // Row, Column
-    std::map<char, Piece> Pieces; // Board representation
+    int N, M;                  // Row, Column
+    std::vector<Piece> Pieces; // Board representation, sorted by id
+    int PRIMARY;               // index of 'P' in Pieces
+    int KEY_BITS;              // bits per piece in a packed key
+    int KEY_WORDS;             // 64-bit words used by a packed key
 
     Board(std::vector<std::string> INPUT, int N, int M); // constructor
+    Board(int N, int M, std::vector<Piece> pieces);      // pieces already placed with the exit on the right
 
-    std::vector<std::shared_ptr<Board>> GenerateSuccessors() const;
-    std::string Serialize() const;
-    bool IsSolved();                          // check if board is solved
+    void GenerateMoves(std::vector<Move> &moves) const; // every legal slide, written into moves
+    void Apply(const Move &move);                       // make a move in place
+    void Undo(const Move &move);                        // take back a move made with Apply
+
+    const StateKey &Pack() const { return key; } // kept up to date by Apply / Undo
+    void Load(const StateKey &key);              // jump to a packed state of this board
+
+    bool IsSolved() const;                    // check if board is solved
     void PrintBoard(std::ostream &out) const; // output board
+
+private:
+    // occupancy bitboards: bit j of rows[i] / bit i of cols[j] is set when cell (i, j) is taken
+    std::vector<std::uint64_t> rows;
+    std::vector<std::uint64_t> cols;
+    StateKey key;
+    int perWord; // pieces per key word
+
+    void Init(); // order the pieces, size the key and occupy the cells
+    void Occupy(const Piece &piece);
+    void Vacate(const Piece &piece);
 };
 
-#endif
\ No newline at end of file
+#endif
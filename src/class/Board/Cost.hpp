@@ -0,0 +1,69 @@
+#ifndef __COST__
+#define __COST__
+
+#include "Move.hpp"
+
+#include <cstdlib>
+#include <stdexcept>
+#include <string>
+#include <vector>
+
+// What a solution costs. Every solver charges Cost(model, move) for each slide it
+// makes, so the same search finds move-optimal or cell-optimal solutions:
+//   MOVES   1 per slide, however far the piece goes (the puzzle's usual count)
+//   CELLS   1 per cell travelled
+// Heuristics count moves; a slide travels at least one cell, so a heuristic that
+// is admissible for MOVES is admissible for CELLS too.
+enum class CostModel
+{
+    MOVES,
+    CELLS
+};
+
+inline int Cost(CostModel model, const Move &move)
+{
+    return model == CostModel::CELLS ? std::abs(move.delta) : 1;
+}
+
+inline int PathCost(CostModel model, const std::vector<Move> &moves)
+{
+    int cost = 0;
+    for (const Move &move : moves)
+        cost += Cost(model, move);
+    return cost;
+}
+
+inline const char *Name(CostModel model)
+{
+    return model == CostModel::CELLS ? "CELLS" : "MOVES";
+}
+
+inline CostModel ParseCostModel(const std::string &name) // throws std::invalid_argument
+{
+    if (name == "MOVES")
+        return CostModel::MOVES;
+    if (name == "CELLS")
+        return CostModel::CELLS;
+    throw std::invalid_argument("Unknown cost model " + name + " (MOVES / CELLS)");
+}
+
+// Back-to-back slides of one piece merged into a single macro-move; slides that
+// cancel out are dropped. Never makes a solution dearer under either model.
+inline std::vector<Move> Compress(const std::vector<Move> &moves)
+{
+    std::vector<Move> merged;
+    for (const Move &move : moves)
+    {
+        if (!merged.empty() && merged.back().piece == move.piece)
+        {
+            merged.back().delta = static_cast<std::int8_t>(merged.back().delta + move.delta);
+            if (merged.back().delta == 0)
+                merged.pop_back();
+        }
+        else
+            merged.push_back(move);
+    }
+    return merged;
+}
+
+#endif
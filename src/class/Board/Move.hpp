@@ -0,0 +1,15 @@
+#ifndef __MOVE__
+#define __MOVE__
+
+#include <cstdint>
+
+// slide of Board::Pieces[piece] by delta cells along its own axis
+struct Move
+{
+    std::uint8_t piece;
+    std::int8_t delta;
+
+    Move Inverse() const { return {piece, static_cast<std::int8_t>(-delta)}; }
+};
+
+#endif
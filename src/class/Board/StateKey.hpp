@@ -0,0 +1,47 @@
+#ifndef __STATEKEY__
+#define __STATEKEY__
+
+#include <cstddef>
+#include <cstdint>
+
+// Packed board state: one small offset per piece (the only coordinate that
+// can change), stored as offset + 1 so a valid key is never all zero.
+struct StateKey
+{
+    static const int MAX_WORDS = 3;
+
+    std::uint64_t w[MAX_WORDS] = {0, 0, 0};
+
+    bool operator==(const StateKey &other) const
+    {
+        return w[0] == other.w[0] && w[1] == other.w[1] && w[2] == other.w[2];
+    }
+    bool operator!=(const StateKey &other) const { return !(*this == other); }
+    bool operator<(const StateKey &other) const
+    {
+        if (w[0] != other.w[0])
+            return w[0] < other.w[0];
+        if (w[1] != other.w[1])
+            return w[1] < other.w[1];
+        return w[2] < other.w[2];
+    }
+
+    std::uint64_t Hash() const
+    {
+        // splitmix64 finalizer over the words
+        std::uint64_t h = w[0] ^ (w[1] * 0x9E3779B97F4A7C15ULL) ^ (w[2] * 0xC2B2AE3D27D4EB4FULL);
+        h ^= h >> 30;
+        h *= 0xBF58476D1CE4E5B9ULL;
+        h ^= h >> 27;
+        h *= 0x94D049BB133111EBULL;
+        h ^= h >> 31;
+        return h;
+    }
+};
+
+struct StateKeyHash
+{
+    std::size_t operator()(const StateKey &key) const { return key.Hash(); }
+};
+
+#endif
@@ -0,0 +1,237 @@
+#include "Daemon.hpp"
+#include "../Board/Cost.hpp"
+#include "../Algo/Heuristics/Heuristics.hpp"
+#include "../Algo/Parallel/ParallelSolver.hpp"
+#include "../Algo/Solver/Solver.hpp"
+#include "../Protocol/Protocol.hpp"
+
+#include <algorithm>
+#include <chrono>
+#include <exception>
+#include <optional>
+#include <sstream>
+#include <thread>
+
+Daemon::Daemon(std::istream &in, std::ostream &out, int threads, int memory)
+    : in(in), out(out), threads(threads), table(static_cast<std::size_t>(memory) << 20)
+{
+}
+
+void Daemon::Read()
+{
+    std::string line;
+    while (std::getline(in, line))
+    {
+        if (!line.empty() && line.back() == '\r')
+            line.pop_back();
+        std::istringstream words(line);
+        std::string command;
+        words >> command;
+
+        if (command == "SOLVE")
+        {
+            Request request;
+            std::vector<std::string> fields;
+            for (std::string field; words >> field;)
+                fields.push_back(field);
+            // 4 fields: no cost; 5: cost; 7: cost and budget. Anything else is refused, not guessed at
+            request.malformed = fields.size() != 4 && fields.size() != 5 && fields.size() != 7;
+            request.id = fields.empty() ? "-" : fields[0];
+            if (!request.malformed)
+            {
+                request.algorithm = fields[1];
+                request.heuristic = fields[2];
+            }
+            if (fields.size() == 5 || fields.size() == 7)
+                request.cost = fields[3];
+            if (fields.size() == 7)
+            {
+                std::istringstream(fields[4]) >> request.timeout;
+                std::istringstream(fields[5]) >> request.nodes;
+            }
+            std::size_t lines = 0; // skipped too when the request is malformed
+            if (fields.size() >= 4)
+                std::istringstream(fields.back()) >> lines;
+            for (std::size_t i = 0; i < lines && std::getline(in, line); i++)
+            {
+                if (!line.empty() && line.back() == '\r')
+                    line.pop_back();
+                request.problem.push_back(line);
+            }
+
+            std::lock_guard<std::mutex> guard(lock);
+            queue.push_back(std::move(request));
+            wake.notify_one();
+        }
+        else if (command == "CANCEL")
+        {
+            std::string id;
+            words >> id;
+            std::lock_guard<std::mutex> guard(lock);
+            // an id that already finished (or never came) would stay in cancelled for good
+            bool known = id == running || std::any_of(queue.begin(), queue.end(), [&](const Request &request)
+                                                      { return request.id == id; });
+            if (known)
+                cancelled.insert(id);
+        }
+        else if (command == "QUIT")
+            break;
+    }
+
+    // closing stops the current request and drops the queued ones
+    std::lock_guard<std::mutex> guard(lock);
+    closed = true;
+    wake.notify_one();
+}
+
+bool Daemon::Cancelled(const std::string &id)
+{
+    std::lock_guard<std::mutex> guard(lock);
+    return closed || cancelled.count(id) != 0;
+}
+
+void Daemon::Run()
+{
+    std::thread reader(&Daemon::Read, this);
+    while (true)
+    {
+        Request request;
+        {
+            std::unique_lock<std::mutex> guard(lock);
+            wake.wait(guard, [&]
+                      { return closed || !queue.empty(); });
+            if (closed)
+                break;
+            request = std::move(queue.front());
+            queue.pop_front();
+            running = request.id;
+        }
+
+        Solve(request);
+
+        std::lock_guard<std::mutex> guard(lock);
+        running.clear();
+        cancelled.erase(request.id);
+    }
+    reader.join();
+}
+
+void Daemon::Solve(const Request &request)
+{
+    Protocol protocol(out);
+    if (request.malformed)
+    {
+        protocol.Error(request.id + " malformed SOLVE");
+        return;
+    }
+    if (Cancelled(request.id))
+    {
+        protocol.Cancelled(0, 0);
+        return;
+    }
+
+    try
+    {
+        std::ostringstream text;
+        for (const std::string &line : request.problem)
+            text << line << '\n';
+        std::istringstream problem(text.str());
+        Board board = Protocol::ReadProblem(problem);
+
+        bool uniform = request.algorithm == "UCS" || request.algorithm == "HDUCS" || request.algorithm == "BIDI";
+        Heuristics H(uniform ? "ZERO" : request.heuristic == "-" ? "" : request.heuristic);
+        CostModel model = ParseCostModel(request.cost);
+
+        // the normalized board, so the same puzzle matches whichever side its exit was drawn on
+        std::ostringstream key;
+        key << request.algorithm << ' ' << H.Name() << ' ' << Name(model) << ' ' << board.N << ' ' << board.M << '\n';
+        board.PrintBoard(key);
+
+        auto hit = cache.find(key.str());
+        if (hit == cache.end())
+        {
+            H.Prepare(board);
+            Solver solver(board, H);
+            solver.TABLE = &table;
+            solver.COST = model;
+            solver.NODE_LIMIT = request.nodes;
+            ParallelSolver parallelSolver(board, H, threads);
+            parallelSolver.COST = model;
+            solver.OnProgress = [&](const SearchProgress &progress)
+            {
+                protocol.Progress(progress);
+                return !Cancelled(request.id) && (request.timeout <= 0 || progress.elapsed < request.timeout);
+            };
+            parallelSolver.OnProgress = solver.OnProgress;
+            auto start = std::chrono::high_resolution_clock::now();
+            solver.OnImproved = [&](const std::vector<Move> &moves, double bound)
+            {
+                std::vector<Move> compressed = Compress(moves);
+                auto elapsed = std::chrono::duration_cast<std::chrono::milliseconds>(std::chrono::high_resolution_clock::now() - start);
+                protocol.Improved(board, compressed, elapsed.count(), solver.VISITED_NODES, PathCost(model, compressed), bound);
+            };
+
+            bool parallel = request.algorithm == "HDA*" || request.algorithm == "HDUCS";
+            bool anytime = request.algorithm == "ARA*";
+            std::optional<std::vector<Move>> solution;
+            if (parallel)
+                solution = parallelSolver.Solve();
+            else if (request.algorithm == "UCS" || request.algorithm == "A*")
+                solution = solver.SolveComplete();
+            else if (request.algorithm == "GBFS")
+                solution = solver.SolveGreedy();
+            else if (request.algorithm == "BIDI")
+                solution = solver.SolveBidirectional();
+            else if (anytime)
+                solution = solver.SolveAnytime();
+            else
+                solution = solver.SolveLowMemory();
+            auto end = std::chrono::high_resolution_clock::now();
+
+            long long ms = std::chrono::duration_cast<std::chrono::milliseconds>(end - start).count();
+            int visited = parallel ? parallelSolver.VISITED_NODES : solver.VISITED_NODES;
+            if (Metrics::ENABLED)
+                protocol.Stats(parallel ? parallelSolver.METRICS : solver.METRICS, ms);
+            if (parallel ? parallelSolver.CANCELLED : solver.CANCELLED)
+            {
+                // ARA* answers a CANCEL or a spent budget with its best solution so far, which is not cached
+                if (!solution)
+                    protocol.Cancelled(ms, visited);
+                else
+                {
+                    std::vector<Move> moves = Compress(*solution);
+                    protocol.Solution(board, moves);
+                    protocol.Done(ms, visited, moves.size() + 1, PathCost(model, moves), solver.BOUND);
+                }
+                return;
+            }
+
+            recent.emplace_front(key.str(), Answer{solution.has_value(), Compress(solution.value_or(std::vector<Move>())), ms, visited});
+            hit = cache.emplace(key.str(), recent.begin()).first;
+            if (recent.size() > CACHE_SIZE)
+            {
+                cache.erase(recent.back().first);
+                recent.pop_back();
+            }
+        }
+        else
+        {
+            recent.splice(recent.begin(), recent, hit->second);
+            protocol.Cached();
+        }
+
+        const Answer &answer = hit->second->second;
+        if (!answer.solved)
+        {
+            protocol.NoSolution(answer.ms, answer.visited);
+            return;
+        }
+        protocol.Solution(board, answer.moves);
+        protocol.Done(answer.ms, answer.visited, answer.moves.size() + 1, PathCost(model, answer.moves),
+                      request.algorithm == "ARA*" ? 1.0 : 0); // ARA* is cached only once proven optimal
+    }
+    catch (const std::exception &error)
+    {
+        protocol.Error(error.what());
+    }
+}
@@ -0,0 +1,88 @@
+#ifndef __DAEMON__
+#define __DAEMON__
+
+#include "../Board/Move.hpp"
+#include "../Algo/Transposition/TranspositionTable.hpp"
+
+#include <atomic>
+#include <condition_variable>
+#include <cstddef>
+#include <deque>
+#include <istream>
+#include <list>
+#include <mutex>
+#include <ostream>
+#include <set>
+#include <string>
+#include <unordered_map>
+#include <vector>
+
+// Long-lived solver for main.exe --daemon. Requests arrive one per line on in:
+//   SOLVE <id> <algorithm> <heuristic | -> [<cost> [<timeout> <nodes>]] <lines>
+//                                                   then <lines> lines of problem.txt;
+//                                                   cost is MOVES (default) or CELLS; the
+//                                                   budget gives up after <timeout> ms or
+//                                                   <nodes> expansions (0 = never; nodes
+//                                                   not for HDA* / HDUCS), like --timeout
+//                                                   and --nodes
+//   CANCEL <id>                                     stop (or drop) that request; a running
+//                                                   ARA* solve ends with its best solution;
+//                                                   ignored once the request has finished
+//   QUIT                                            same as closing in
+// A SOLVE with any other field count is answered with ERROR <id> malformed SOLVE, and
+// its <lines> lines, if that count can be read, are skipped.
+// Requests are solved one at a time, in order. Each SOLVE is answered on out with the
+// --stream records (see Protocol.hpp) and ends with exactly one DONE, NOSOLUTION,
+// CANCELLED or ERROR record. Results are remembered in an LRU cache keyed by the
+// normalized board, the algorithm, the heuristic and the cost model; a hit is answered at once,
+// after a CACHED record.
+class Daemon
+{
+private:
+    struct Request
+    {
+        std::string id, algorithm, heuristic, cost = "MOVES";
+        long long timeout = 0, nodes = 0; // budget, 0 = none
+        bool malformed = false;           // wrong field count: answered with ERROR <id> malformed SOLVE
+        std::vector<std::string> problem; // problem.txt lines
+    };
+
+    struct Answer
+    {
+        bool solved;
+        std::vector<Move> moves;
+        long long ms;
+        int visited;
+    };
+
+    std::istream &in;
+    std::ostream &out;
+    int threads;
+
+    // requests read but not finished, guarded by lock
+    std::mutex lock;
+    std::condition_variable wake;
+    std::deque<Request> queue;
+    std::set<std::string> cancelled;
+    std::string running; // id being solved
+    bool closed = false;
+
+    // LRU cache, most recent first
+    std::list<std::pair<std::string, Answer>> recent;
+    std::unordered_map<std::string, std::list<std::pair<std::string, Answer>>::iterator> cache;
+
+    TranspositionTable table; // kept between IDA* requests
+
+    void Read();                       // reader thread: parse requests from in
+    bool Cancelled(const std::string &id);
+    void Solve(const Request &request);
+
+public:
+    static const std::size_t CACHE_SIZE = 256; // solutions remembered
+
+    Daemon(std::istream &in, std::ostream &out, int threads, int memory);
+
+    void Run(); // until QUIT or the end of in
+};
+
+#endif
@@ -0,0 +1,355 @@
+#include "Generator.hpp"
+#include "../Algo/Heuristics/Heuristics.hpp"
+#include "../Algo/Solver/Solver.hpp"
+#include "../Protocol/Protocol.hpp"
+
+#include <algorithm>
+#include <cstdio>
+#include <filesystem>
+#include <fstream>
+#include <map>
+#include <stdexcept>
+#include <system_error>
+#include <thread>
+
+namespace fs = std::filesystem;
+
+namespace
+{
+    // piece names besides P; K would read as the exit
+    const std::string LETTERS = "ABCDEFGHIJLMNOQRSTUVWXYZ";
+
+    struct Shape
+    {
+        char id;
+        int row, col, length;
+        bool vertical;
+    };
+
+    std::vector<Shape> Shapes(const std::vector<std::string> &rows)
+    {
+        std::vector<Shape> shapes;
+        std::string found;
+        for (int i = 0; i < static_cast<int>(rows.size()); i++)
+        {
+            for (int j = 0; j < static_cast<int>(rows[i].size()); j++)
+            {
+                char id = rows[i][j];
+                if (id == '.' || found.find(id) != std::string::npos)
+                    continue;
+                found += id;
+                bool vertical = i + 1 < static_cast<int>(rows.size()) && rows[i + 1][j] == id;
+                int length = 1;
+                while (vertical ? i + length < static_cast<int>(rows.size()) && rows[i + length][j] == id
+                                : j + length < static_cast<int>(rows[i].size()) && rows[i][j + length] == id)
+                    length++;
+                shapes.push_back({id, i, j, length, vertical});
+            }
+        }
+        return shapes;
+    }
+
+    void Draw(std::vector<std::string> &rows, const Shape &shape, char id)
+    {
+        for (int k = 0; k < shape.length; k++)
+            rows[shape.row + (shape.vertical ? k : 0)][shape.col + (shape.vertical ? 0 : k)] = id;
+    }
+
+    bool Fits(const std::vector<std::string> &rows, const Shape &shape)
+    {
+        for (int k = 0; k < shape.length; k++)
+        {
+            if (rows[shape.row + (shape.vertical ? k : 0)][shape.col + (shape.vertical ? 0 : k)] != '.')
+                return false;
+        }
+        return true;
+    }
+
+    int Uniform(std::mt19937_64 &random, int low, int high) // low..high inclusive
+    {
+        return std::uniform_int_distribution<int>(low, high)(random);
+    }
+}
+
+Generator::Generator(const Options &options) : options(options)
+{
+    if (options.N < 3 || options.M < 3 || options.N > 64 || options.M > 64)
+        throw std::invalid_argument("Board size must be between 3 and 64 on each side");
+    if (std::string("UDLR").find(options.exit) == std::string::npos)
+        throw std::invalid_argument(std::string("Unknown exit side ") + options.exit + " (U / D / L / R)");
+    if (options.maxPieces > static_cast<int>(LETTERS.size()))
+        throw std::invalid_argument("At most " + std::to_string(LETTERS.size()) + " pieces besides P");
+
+    // the Board constructor turns an exit on the top or bottom to the right
+    bool turned = options.exit == 'U' || options.exit == 'D';
+    this->N = turned ? options.M : options.N;
+    this->M = turned ? options.N : options.M;
+    this->exitRow = (this->N - 1) / 2;
+    if (this->options.maxPieces <= 0)
+        this->options.maxPieces = std::min<int>(LETTERS.size(), this->N * this->M / 3);
+    this->options.threads = std::max(1, options.threads);
+}
+
+std::string Generator::Canonical(const std::vector<std::string> &rows)
+{
+    // pieces renamed in the order they are met, P kept
+    auto relabel = [](const std::vector<std::string> &rows)
+    {
+        std::map<char, char> names;
+        std::string key;
+        for (const std::string &row : rows)
+        {
+            for (char id : row)
+                key += id == '.' || id == 'P' ? id : names.emplace(id, static_cast<char>('a' + names.size())).first->second;
+            key += '/';
+        }
+        return key;
+    };
+    return std::min(relabel(rows), relabel(std::vector<std::string>(rows.rbegin(), rows.rend())));
+}
+
+bool Generator::AddPiece(std::vector<std::string> &rows, std::mt19937_64 &random) const
+{
+    std::vector<Shape> shapes = Shapes(rows);
+    auto free = std::find_if(LETTERS.begin(), LETTERS.end(), [&](char id)
+                             { return std::none_of(shapes.begin(), shapes.end(), [&](const Shape &shape)
+                                                   { return shape.id == id; }); });
+    if (free == LETTERS.end())
+        return false;
+    int primaryCol = 0;
+    for (const Shape &shape : shapes)
+    {
+        if (shape.id == 'P')
+            primaryCol = shape.col;
+    }
+
+    for (int tries = 0; tries < 50; tries++)
+    {
+        Shape shape{*free, 0, 0, Uniform(random, 0, 3) == 0 ? 3 : 2, Uniform(random, 0, 1) == 0};
+        if (shape.length > (shape.vertical ? N : M))
+            shape.length = 2;
+        shape.row = Uniform(random, 0, N - (shape.vertical ? shape.length : 1));
+        shape.col = Uniform(random, 0, M - (shape.vertical ? 1 : shape.length));
+        if (!shape.vertical && shape.row == exitRow && shape.col > primaryCol)
+            continue; // P could never get past it
+        if (!Fits(rows, shape))
+            continue;
+        Draw(rows, shape, shape.id);
+        return true;
+    }
+    return false;
+}
+
+std::vector<std::string> Generator::RandomBoard(std::mt19937_64 &random) const
+{
+    std::vector<std::string> rows(N, std::string(M, '.'));
+    Draw(rows, {'P', exitRow, Uniform(random, 0, M - 3), 2, false}, 'P');
+    int target = Uniform(random, (options.maxPieces + 1) / 2, options.maxPieces);
+    for (int pieces = 0; pieces < target && AddPiece(rows, random); pieces++)
+    {
+    }
+    return rows;
+}
+
+std::vector<std::string> Generator::Mutate(const std::vector<std::string> &rows, std::mt19937_64 &random) const
+{
+    std::vector<std::string> changed = rows;
+    std::vector<Shape> shapes = Shapes(rows);
+    switch (Uniform(random, 0, 3))
+    {
+    case 0: // add a piece
+        if (static_cast<int>(shapes.size()) - 1 < options.maxPieces && AddPiece(changed, random))
+            break;
+        [[fallthrough]];
+    case 1: // take one away
+    {
+        if (shapes.size() < 2)
+            break;
+        Shape shape = shapes[Uniform(random, 0, static_cast<int>(shapes.size()) - 1)];
+        if (shape.id != 'P')
+            Draw(changed, shape, '.');
+        break;
+    }
+    case 2: // put one somewhere else, P anywhere along its row
+    {
+        Shape shape = shapes[Uniform(random, 0, static_cast<int>(shapes.size()) - 1)];
+        Draw(changed, shape, '.');
+        int primaryCol = 0;
+        for (const Shape &other : shapes)
+        {
+            if (other.id == 'P')
+                primaryCol = other.col;
+        }
+        for (int tries = 0; tries < 20; tries++)
+        {
+            Shape moved = shape;
+            if (shape.id == 'P')
+                moved.col = Uniform(random, 0, M - 3);
+            else
+            {
+                moved.row = Uniform(random, 0, N - (shape.vertical ? shape.length : 1));
+                moved.col = Uniform(random, 0, M - (shape.vertical ? 1 : shape.length));
+                if (!moved.vertical && moved.row == exitRow && moved.col > primaryCol)
+                    continue;
+            }
+            if (Fits(changed, moved))
+            {
+                Draw(changed, moved, moved.id);
+                return changed;
+            }
+        }
+        return rows;
+    }
+    default: // make a legal move: the same pieces, another starting state
+    {
+        Board board(rows, N, M);
+        std::vector<Move> moves;
+        board.GenerateMoves(moves);
+        if (moves.empty())
+            break;
+        board.Apply(moves[Uniform(random, 0, static_cast<int>(moves.size()) - 1)]);
+        if (!board.IsSolved())
+            changed = Protocol::Rows(board);
+        break;
+    }
+    }
+    return changed;
+}
+
+Generator::Rated Generator::Rate(const std::vector<std::string> &rows) const
+{
+    Rated rated;
+    rated.rows = rows;
+    Board board(rows, N, M);
+    Heuristics H("BLOCKERS"); // admissible, so A* finds the optimal count
+    H.Prepare(board);
+    Solver solver(board, H);
+    solver.PROGRESS_INTERVAL = 0;
+    solver.OnProgress = [&](const SearchProgress &progress)
+    { return progress.expanded < options.nodes; };
+
+    auto begin = std::chrono::steady_clock::now();
+    std::optional<std::vector<Move>> solution = solver.SolveComplete();
+    rated.ms = std::chrono::duration_cast<std::chrono::milliseconds>(std::chrono::steady_clock::now() - begin).count();
+    rated.visited = solver.VISITED_NODES;
+    if (solution && !solver.CANCELLED)
+    {
+        rated.solution = *solution;
+        rated.moves = static_cast<int>(solution->size());
+    }
+    return rated;
+}
+
+void Generator::Keep(const Rated &board)
+{
+    std::string key = Canonical(board.rows);
+    std::lock_guard<std::mutex> guard(lock);
+    if (done.load() || !seen.insert(key).second)
+        return;
+
+    std::string name;
+    std::error_code error;
+    do
+    {
+        char buffer[64];
+        std::snprintf(buffer, sizeof(buffer), "gen-%04d - %d moves", next++, board.moves);
+        name = buffer;
+    } while (fs::exists(fs::path(options.folder) / name, error));
+
+    fs::path target = fs::path(options.folder) / name;
+    fs::create_directories(target, error);
+    Board initial(board.rows, N, M);
+    std::ofstream problem(target / "problem.txt");
+    Protocol::WriteProblem(problem, initial, options.exit);
+    std::ofstream solution(target / "solutions.txt");
+    Protocol(solution).SolutionFile(initial, board.solution, board.ms, board.visited);
+    if (!problem || !solution)
+    {
+        *log << "[GENERATE] cannot write " << target.string() << "\n";
+        done.store(true);
+        return;
+    }
+
+    written++;
+    *log << "[GENERATE] " << name << ": " << initial.Pieces.size() << " pieces, " << board.visited << " nodes\n";
+    log->flush();
+    if (written >= options.count)
+        done.store(true);
+}
+
+void Generator::Climb(int id)
+{
+    std::mt19937_64 random(options.seed + static_cast<unsigned long long>(id) * 0x9E3779B97F4A7C15ULL);
+    auto timeUp = [&]()
+    {
+        if (std::chrono::steady_clock::now() - start >= std::chrono::seconds(options.seconds))
+            done.store(true);
+        return done.load();
+    };
+
+    while (!timeUp())
+    {
+        Rated best = Rate(RandomBoard(random));
+        rated++;
+        if (best.moves < 0)
+            continue; // unsolvable from the start: draw another
+
+        // sideways steps are taken too, so the climb can cross plateaus
+        Rated current = best;
+        for (int stale = 0; stale < options.patience && !timeUp(); stale++)
+        {
+            Rated next = Rate(Mutate(current.rows, random));
+            rated++;
+            if (next.moves < current.moves)
+                continue;
+            current = std::move(next);
+            if (current.moves > best.moves)
+            {
+                best = current;
+                stale = 0;
+            }
+        }
+        if (best.moves >= options.minMoves)
+            Keep(best);
+    }
+}
+
+int Generator::Run(std::ostream &out)
+{
+    log = &out;
+    start = std::chrono::steady_clock::now();
+    if (options.seed == 0)
+        options.seed = static_cast<unsigned long long>(std::chrono::system_clock::now().time_since_epoch().count());
+
+    // what is in the folder already counts as seen
+    std::error_code error;
+    fs::create_directories(options.folder, error);
+    for (const fs::directory_entry &entry : fs::directory_iterator(options.folder, error))
+    {
+        std::ifstream file(entry.path() / "problem.txt");
+        if (!file)
+            continue;
+        if (entry.path().filename().string().rfind("gen-", 0) == 0)
+            next++;
+        try
+        {
+            Board board = Protocol::ReadProblem(file);
+            seen.insert(Canonical(Protocol::Rows(board)));
+        }
+        catch (const std::exception &)
+        {
+            // not a problem we could have written
+        }
+    }
+
+    std::vector<std::thread> threads;
+    for (int id = 0; id < options.threads; id++)
+        threads.emplace_back(&Generator::Climb, this, id);
+    for (std::thread &thread : threads)
+        thread.join();
+
+    auto elapsed = std::chrono::duration_cast<std::chrono::milliseconds>(std::chrono::steady_clock::now() - start);
+    out << "[GENERATE] " << written << " of " << options.count << " boards in " << elapsed.count() / 1000.0
+        << " s, " << rated.load() << " boards rated, seed " << options.seed << "\n";
+    return written >= options.count ? 0 : 1;
+}
@@ -0,0 +1,82 @@
+#ifndef __GENERATOR__
+#define __GENERATOR__
+
+#include "../Board/Board.hpp"
+
+#include <atomic>
+#include <chrono>
+#include <mutex>
+#include <ostream>
+#include <random>
+#include <set>
+#include <string>
+#include <vector>
+
+// main.exe --generate <folder>: hard puzzles in bulk. Every thread starts from a
+// random board and hill-climbs: add, remove, move or slide a piece, and keep the
+// change when the board stays solvable and needs at least as many moves as before
+// (the optimal count, from A* with BLOCKERS). A climb that stops improving is
+// restarted, and its best board is written when it is hard enough and new.
+//
+// Boards are built with the exit on the right, as the Board constructor turns
+// every problem, and written with the exit on the side asked for. Two boards
+// are the same puzzle when they match after relabeling the pieces and, as a
+// mirror image is solved by the same moves, after flipping top and bottom.
+// Boards already in the folder count as seen, so runs can add to it.
+class Generator
+{
+public:
+    struct Options
+    {
+        std::string folder;          // one subfolder per board is written here
+        int N = 6, M = 6;            // board size as written
+        char exit = 'R';             // side of the exit as written: U, D, L or R
+        int count = 100;             // boards to write
+        int minMoves = 15;           // keep only boards needing at least this many moves
+        int maxPieces = 0;           // besides P; 0 for one per three cells, up to 24
+        int threads = 1;
+        long long seconds = 300;     // stop after this long even if fewer were found
+        int patience = 300;          // climbing steps without a harder board before a restart
+        long long nodes = 2000000;   // A* expansions allowed for rating one board
+        unsigned long long seed = 0; // 0 for one from the clock
+    };
+
+private:
+    // a board in the exit-on-the-right frame, and what it took to solve
+    struct Rated
+    {
+        std::vector<std::string> rows;
+        int moves = -1; // optimal; -1 unsolvable or over the node budget
+        std::vector<Move> solution;
+        long long ms = 0;
+        int visited = 0;
+    };
+
+    Options options;
+    int N, M, exitRow; // in the exit-on-the-right frame
+
+    std::mutex lock; // guards seen, written, next and the folder
+    std::set<std::string> seen;
+    int written = 0;               // boards written by this run
+    int next = 1;                  // number of the next gen-NNNN folder
+    std::atomic<long long> rated{0}; // boards rated, all threads
+    std::atomic<bool> done{false};
+    std::chrono::steady_clock::time_point start;
+    std::ostream *log = nullptr;
+
+    static std::string Canonical(const std::vector<std::string> &rows); // same for the same puzzle
+
+    bool AddPiece(std::vector<std::string> &rows, std::mt19937_64 &random) const;
+    std::vector<std::string> RandomBoard(std::mt19937_64 &random) const;
+    std::vector<std::string> Mutate(const std::vector<std::string> &rows, std::mt19937_64 &random) const;
+    Rated Rate(const std::vector<std::string> &rows) const;
+    void Keep(const Rated &board);
+    void Climb(int id);
+
+public:
+    Generator(const Options &options); // throws std::invalid_argument for an impossible size or exit
+
+    int Run(std::ostream &out); // 0 when every board asked for was written, 1 otherwise
+};
+
+#endif
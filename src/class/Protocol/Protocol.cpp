@@ -0,0 +1,328 @@
+#include "Protocol.hpp"
+
+#include <algorithm>
+#include <charconv>
+#include <iterator>
+#include <stdexcept>
+#include <string_view>
+
+Board Protocol::ReadProblem(std::istream &in)
+{
+    // The whole file in one read, split into lines without copying them. Every cell
+    // is checked as it goes straight to its place in the exit-on-the-right grid
+    // Board works in, and each piece's extent is noted on the way.
+    std::string text((std::istreambuf_iterator<char>(in)), std::istreambuf_iterator<char>());
+    std::vector<std::string_view> lines;
+    for (std::size_t begin = 0; begin < text.size();)
+    {
+        std::size_t end = text.find('\n', begin);
+        if (end == std::string::npos)
+            end = text.size();
+        std::string_view line(text.data() + begin, end - begin);
+        while (!line.empty() && (line.back() == '\r' || line.back() == ' ' || line.back() == '\t'))
+            line.remove_suffix(1);
+        lines.push_back(line);
+        begin = end + 1;
+    }
+    auto fail = [](std::size_t line, const std::string &message)
+    { throw std::invalid_argument("problem.txt line " + std::to_string(line + 1) + ": " + message); };
+
+    // "N M" then the piece count, as numbers on the first lines
+    int header[3], found = 0;
+    std::size_t line = 0;
+    for (; line < lines.size() && found < 3; line++)
+    {
+        const char *at = lines[line].data(), *end = at + lines[line].size();
+        while (found < 3)
+        {
+            while (at < end && (*at == ' ' || *at == '\t'))
+                at++;
+            if (at == end)
+                break;
+            auto [next, error] = std::from_chars(at, end, header[found]);
+            if (error != std::errc())
+                fail(line, "expected the board size and piece count");
+            at = next;
+            found++;
+        }
+    }
+    int N = header[0], M = header[1], declared = header[2];
+    if (found < 3 || N <= 0 || M <= 0)
+        throw std::invalid_argument("Problem must start with the board size and piece count");
+    if (N > 64 || M > 64)
+        throw std::length_error("Board is larger than 64x64");
+
+    std::size_t last = lines.size();
+    while (last > line && lines[last - 1].empty())
+        last--;
+    std::size_t rows = last - line;
+
+    // where the exit is: a line holding only a K above or below the board, or a K
+    // ending one row (right) or starting one of rows that all have a leading column (left)
+    auto exitLine = [&](std::size_t index)
+    {
+        std::string_view text = lines[index];
+        std::size_t k = text.find('K');
+        return k != std::string_view::npos && text.find_first_not_of(' ') == k && k + 1 == text.size() ? static_cast<int>(k) : -1;
+    };
+    char side = 0;
+    std::size_t first = line; // line of the board's first row
+    int left = 0, exitAt = -1;
+    if (rows == static_cast<std::size_t>(N) + 1)
+    {
+        if ((exitAt = exitLine(line)) >= 0)
+        {
+            side = 'U';
+            first = line + 1;
+        }
+        else if ((exitAt = exitLine(last - 1)) >= 0)
+            side = 'D';
+        else
+            fail(line, "expected a line with only the exit K above or below the board");
+        if (exitAt >= M)
+            fail(side == 'U' ? line : last - 1, "the exit K is beyond the board");
+    }
+    else if (rows == static_cast<std::size_t>(N))
+    {
+        bool leading = true;
+        for (std::size_t i = first; i < last; i++)
+            leading &= lines[i].size() == static_cast<std::size_t>(M) + 1 && (lines[i][0] == ' ' || lines[i][0] == 'K');
+        for (std::size_t i = first; i < last; i++)
+        {
+            bool exit = leading ? lines[i][0] == 'K' : lines[i].size() == static_cast<std::size_t>(M) + 1 && lines[i].back() == 'K';
+            if (exit && exitAt >= 0)
+                fail(i, "a second exit");
+            if (exit)
+                exitAt = static_cast<int>(i - first);
+        }
+        if (exitAt < 0)
+            fail(line, "no exit: put a K at the end of P's row, or above, below or before the board");
+        side = leading ? 'L' : 'R';
+        left = leading ? 1 : 0;
+    }
+    else
+        fail(line, "expected " + std::to_string(N) + " rows of " + std::to_string(M) + " cells and the exit, found " + std::to_string(rows) + " lines");
+
+    // the same quarter turns as the Board constructor: right 0, top 1, left 2, bottom 3
+    int turns = side == 'R' ? 0 : side == 'U' ? 1 : side == 'L' ? 2 : 3;
+    int height = turns % 2 == 0 ? N : M, width = turns % 2 == 0 ? M : N;
+    int exitRow = side == 'R' ? exitAt : side == 'L' ? N - 1 - exitAt : side == 'U' ? exitAt : M - 1 - exitAt;
+
+    struct Extent
+    {
+        int cells = 0, top = 64, bottom = -1, left = 64, right = -1;
+    };
+    Extent extents[26];
+    std::vector<std::string> grid(height, std::string(width, '.'));
+    for (int i = 0; i < N; i++)
+    {
+        std::size_t at = first + i;
+        std::string_view row = lines[at];
+        std::size_t expected = left + M + (side == 'R' && i == exitAt ? 1 : 0);
+        if (row.size() != expected)
+            fail(at, "expected " + std::to_string(M) + " cells, found " + std::to_string(static_cast<int>(row.size()) - left));
+        for (int j = 0; j < M; j++)
+        {
+            char cell = row[left + j];
+            if (cell == '.')
+                continue;
+            if (cell < 'A' || cell > 'Z')
+                fail(at, std::string("unexpected '") + cell + "' (pieces are A-Z, empty cells '.')");
+            int r = turns == 0 ? i : turns == 1 ? j : turns == 2 ? N - 1 - i : M - 1 - j;
+            int c = turns == 0 ? j : turns == 1 ? N - 1 - i : turns == 2 ? M - 1 - j : i;
+            grid[r][c] = cell;
+            Extent &extent = extents[cell - 'A'];
+            extent.cells++;
+            extent.top = std::min(extent.top, r);
+            extent.bottom = std::max(extent.bottom, r);
+            extent.left = std::min(extent.left, c);
+            extent.right = std::max(extent.right, c);
+        }
+    }
+
+    // each piece one straight run of at least two cells, P level with the exit, and as
+    // many others as declared
+    int pieces = 0;
+    for (int id = 0; id < 26; id++)
+    {
+        const Extent &extent = extents[id];
+        if (extent.cells == 0)
+            continue;
+        pieces++;
+        bool straight = (extent.top == extent.bottom && extent.cells == extent.right - extent.left + 1) ||
+                        (extent.left == extent.right && extent.cells == extent.bottom - extent.top + 1);
+        if (!straight || extent.cells < 2)
+            throw std::invalid_argument(std::string("Piece ") + static_cast<char>('A' + id) +
+                                        " must be one straight line of two or more adjacent cells");
+    }
+    const Extent &primary = extents['P' - 'A'];
+    if (primary.cells == 0)
+        throw std::invalid_argument("Board has no primary piece 'P'");
+    if (primary.top != primary.bottom || primary.top != exitRow)
+        throw std::invalid_argument("The exit must be in line with P, at the end it slides towards");
+    if (declared != pieces - 1)
+        throw std::invalid_argument("Problem declares " + std::to_string(declared) + " pieces besides P but the board has " +
+                                    std::to_string(pieces - 1));
+
+    return Board(grid, height, width);
+}
+
+void Protocol::WriteProblem(std::ostream &out, const Board &board, char exit)
+{
+    // boards are kept with the exit on the right, level with P; turn them so it lands on
+    // the side asked for, the way round ReadProblem turns them back
+    std::vector<std::string> rows = Rows(board);
+    int N = board.N, M = board.M;
+    int exitRow = board.Pieces[board.PRIMARY].pos.first;
+    if (exit == 'R' && exitRow == 0)
+        exit = 'U'; // a K after the first row reads as an exit on the left
+
+    switch (exit)
+    {
+    case 'R':
+        out << N << " " << M << "\n";
+        out << board.Pieces.size() - 1 << "\n";
+        for (int i = 0; i < N; i++)
+            out << rows[i] << (i == exitRow ? "K" : "") << "\n";
+        break;
+    case 'L': // half a turn; every row gets a leading column, K on the exit's
+        out << N << " " << M << "\n";
+        out << board.Pieces.size() - 1 << "\n";
+        for (int i = 0; i < N; i++)
+            out << (N - 1 - i == exitRow ? 'K' : ' ') << std::string(rows[N - 1 - i].rbegin(), rows[N - 1 - i].rend()) << "\n";
+        break;
+    case 'U': // a quarter turn to the left, K above the exit's column
+        out << M << " " << N << "\n";
+        out << board.Pieces.size() - 1 << "\n";
+        out << std::string(exitRow, ' ') << "K\n";
+        for (int i = 0; i < M; i++)
+        {
+            for (int j = 0; j < N; j++)
+                out << rows[j][M - 1 - i];
+            out << "\n";
+        }
+        break;
+    case 'D': // a quarter turn to the right, K below the exit's column
+        out << M << " " << N << "\n";
+        out << board.Pieces.size() - 1 << "\n";
+        for (int i = 0; i < M; i++)
+        {
+            for (int j = 0; j < N; j++)
+                out << rows[N - 1 - j][i];
+            out << "\n";
+        }
+        out << std::string(N - 1 - exitRow, ' ') << "K\n";
+        break;
+    default:
+        throw std::invalid_argument(std::string("Unknown exit side ") + exit + " (U / D / L / R)");
+    }
+}
+
+void Protocol::Progress(const SearchProgress &progress)
+{
+    out << "PROGRESS " << progress.expanded << " " << progress.open << " "
+        << progress.bound << " " << progress.elapsed << "\n";
+    if (progress.metrics != nullptr)
+        out << "METRICS " << progress.metrics->Json(progress.elapsed) << "\n";
+    out.flush();
+}
+
+void Protocol::Stats(const Metrics &metrics, long long ms)
+{
+    out << "METRICS " << metrics.Json(ms) << "\n";
+    out.flush();
+}
+
+std::vector<std::string> Protocol::Rows(const Board &board)
+{
+    std::vector<std::string> rows(board.N, std::string(board.M, '.'));
+    for (const Piece &piece : board.Pieces)
+    {
+        for (int i = 0; i < piece.length; i++)
+        {
+            if (piece.isVertical)
+                rows[piece.pos.first + i][piece.pos.second] = piece.id;
+            else
+                rows[piece.pos.first][piece.pos.second + i] = piece.id;
+        }
+    }
+    return rows;
+}
+
+std::vector<Step> Protocol::Steps(const Board &initial, const std::vector<Move> &moves)
+{
+    std::vector<Step> steps;
+    for (const Move &move : moves)
+    {
+        const Piece &piece = initial.Pieces[move.piece];
+        char direction = piece.isVertical ? (move.delta < 0 ? 'U' : 'D') : (move.delta < 0 ? 'L' : 'R');
+        steps.push_back({piece.id, direction, move.delta < 0 ? -move.delta : move.delta});
+    }
+    return steps;
+}
+
+void Protocol::Solution(const Board &initial, const std::vector<Move> &moves)
+{
+    out << "BOARD " << initial.N << " " << initial.M;
+    for (const std::string &row : Rows(initial))
+        out << " " << row;
+    out << "\n";
+
+    for (const Step &step : Steps(initial, moves))
+        out << "MOVE " << step.piece << " " << step.direction << " " << step.distance << "\n";
+    out.flush();
+}
+
+void Protocol::SolutionFile(const Board &initial, const std::vector<Move> &moves, long long ms, int visited)
+{
+    out << "MOVES\n";
+    out << ms << "\n";
+    out << visited << "\n";
+    out << moves.size() + 1 << "\n";
+    out << initial.N << " " << initial.M << "\n"; // possibly rotated
+    for (const std::string &row : Rows(initial))
+        out << row << "\n";
+
+    for (const Step &step : Steps(initial, moves))
+        out << step.piece << " " << step.direction << " " << step.distance << "\n";
+    out.flush();
+}
+
+void Protocol::Improved(const Board &initial, const std::vector<Move> &moves, long long ms, int visited, int cost, double bound)
+{
+    Solution(initial, moves);
+    out << "IMPROVED " << ms << " " << visited << " " << moves.size() + 1 << " " << cost << " " << bound << "\n";
+    out.flush();
+}
+
+void Protocol::Done(long long ms, int visited, int steps, int cost, double bound)
+{
+    out << "DONE " << ms << " " << visited << " " << steps << " " << cost;
+    if (bound > 0)
+        out << " " << bound;
+    out << "\n";
+    out.flush();
+}
+
+void Protocol::NoSolution(long long ms, int visited)
+{
+    out << "NOSOLUTION " << ms << " " << visited << "\n";
+    out.flush();
+}
+
+void Protocol::Cancelled(long long ms, int visited)
+{
+    out << "CANCELLED " << ms << " " << visited << "\n";
+    out.flush();
+}
+
+void Protocol::Cached()
+{
+    out << "CACHED\n";
+}
+
+void Protocol::Error(const std::string &message)
+{
+    out << "ERROR " << message << "\n";
+    out.flush();
+}
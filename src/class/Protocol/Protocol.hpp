@@ -0,0 +1,75 @@
+#ifndef __PROTOCOL__
+#define __PROTOCOL__
+
+#include "../Board/Board.hpp"
+#include "../Algo/Solver/Solver.hpp"
+
+#include <istream>
+#include <ostream>
+#include <string>
+#include <vector>
+
+// Line protocol spoken on stdout in --stream mode, one record per line:
+//   PROGRESS <expanded> <open> <bound> <ms>
+//   METRICS <json>                            after each PROGRESS and before the result, in
+//                                             builds with RH_METRICS only (see Metrics.hpp)
+//   BOARD <N> <M> <row 0> ... <row N-1>      initial (possibly rotated) board
+//   MOVE <piece> <U|D|L|R> <distance>         one per step of the solution (a macro-move)
+//   IMPROVED <ms> <visited> <steps> <cost> <bound>
+//                                             ARA* only: the BOARD and MOVE records before it are
+//                                             a solution costing at most bound times the optimum;
+//                                             better ones may follow
+//   DONE <ms> <visited> <steps> <cost> [<bound>]
+//                                             cost under the cost model searched with; bound as
+//                                             in IMPROVED, ARA* only
+//   NOSOLUTION <ms> <visited>
+//   CANCELLED <ms> <visited>                  --daemon only: stopped by a CANCEL request
+//   CACHED                                    --daemon only: the records that follow were remembered
+//   ERROR <message>                           --daemon only: the request could not be run
+//
+// solutions.txt uses the same move records (see SolutionFile):
+//   MOVES
+//   <ms>
+//   <visited>
+//   <steps>                                   boards in the solution, initial included
+//   <N> <M>
+//   <N rows of the initial board>
+//   <piece> <U|D|L|R> <distance>              steps - 1 lines
+
+// one slide of a piece, in the (possibly rotated) board's frame
+struct Step
+{
+    char piece;
+    char direction; // U / D / L / R
+    int distance;
+};
+
+class Protocol
+{
+private:
+    std::ostream &out;
+
+    static std::vector<Step> Steps(const Board &initial, const std::vector<Move> &moves);
+
+public:
+    Protocol(std::ostream &out) : out(out) {};
+
+    static Board ReadProblem(std::istream &in); // problem.txt: "N M", piece count, then the rows
+    // the same, the exit drawn on side U, D, L or R (R becomes U when P is on the first
+    // row, where a K would read as a left exit); throws std::invalid_argument for others
+    static void WriteProblem(std::ostream &out, const Board &board, char exit = 'R');
+    static std::vector<std::string> Rows(const Board &board); // '.' for empty cells
+
+    void Progress(const SearchProgress &progress); // and its METRICS record, if it carries one
+    void Stats(const Metrics &metrics, long long ms); // METRICS record
+    void Solution(const Board &initial, const std::vector<Move> &moves);
+    void SolutionFile(const Board &initial, const std::vector<Move> &moves, long long ms, int visited);
+    void Improved(const Board &initial, const std::vector<Move> &moves, long long ms, int visited, int cost, double bound);
+    void Done(long long ms, int visited, int steps, int cost, double bound = 0); // bound written when set
+    void NoSolution(long long ms, int visited);
+    void Cancelled(long long ms, int visited);
+    void Cached();
+    void Error(const std::string &message);
+};
+
+#endif
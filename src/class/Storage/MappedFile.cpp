@@ -0,0 +1,121 @@
+#include "MappedFile.hpp"
+
+#include <filesystem>
+#include <system_error>
+
+#ifdef _WIN32
+#include <windows.h>
+#else
+#include <fcntl.h>
+#include <sys/mman.h>
+#include <sys/stat.h>
+#include <unistd.h>
+#endif
+
+bool MappedFile::Replace(const std::string &from, const std::string &to)
+{
+    // readers that mapped the old file keep it until they close it
+    std::error_code error;
+    std::filesystem::rename(from, to, error);
+    if (error)
+        std::filesystem::remove(from, error);
+    return !error;
+}
+
+#ifdef _WIN32
+
+std::string MappedFile::Private(const std::string &path)
+{
+    return path + "." + std::to_string(GetCurrentProcessId());
+}
+
+bool MappedFile::Open(const std::string &path)
+{
+    Close();
+    HANDLE handle = CreateFileA(path.c_str(), GENERIC_READ, FILE_SHARE_READ, nullptr, OPEN_EXISTING,
+                                FILE_ATTRIBUTE_NORMAL, nullptr);
+    if (handle == INVALID_HANDLE_VALUE)
+        return false;
+    this->file = handle;
+
+    LARGE_INTEGER length;
+    if (!GetFileSizeEx(handle, &length) || length.QuadPart == 0)
+    {
+        Close();
+        return false;
+    }
+    this->size = static_cast<std::size_t>(length.QuadPart);
+
+    this->mapping = CreateFileMappingA(handle, nullptr, PAGE_READONLY, 0, 0, nullptr);
+    if (this->mapping == nullptr)
+    {
+        Close();
+        return false;
+    }
+    this->data = static_cast<const std::uint8_t *>(MapViewOfFile(this->mapping, FILE_MAP_READ, 0, 0, 0));
+    if (this->data == nullptr)
+    {
+        Close();
+        return false;
+    }
+    return true;
+}
+
+void MappedFile::Close()
+{
+    if (this->data != nullptr)
+        UnmapViewOfFile(this->data);
+    if (this->mapping != nullptr)
+        CloseHandle(this->mapping);
+    if (this->file != nullptr)
+        CloseHandle(this->file);
+    this->data = nullptr;
+    this->mapping = nullptr;
+    this->file = nullptr;
+    this->size = 0;
+}
+
+#else
+
+std::string MappedFile::Private(const std::string &path)
+{
+    return path + "." + std::to_string(getpid());
+}
+
+bool MappedFile::Open(const std::string &path)
+{
+    Close();
+    this->fd = open(path.c_str(), O_RDONLY);
+    if (this->fd < 0)
+        return false;
+
+    struct stat info;
+    if (fstat(this->fd, &info) != 0 || info.st_size == 0)
+    {
+        Close();
+        return false;
+    }
+    this->size = static_cast<std::size_t>(info.st_size);
+
+    void *address = mmap(nullptr, this->size, PROT_READ, MAP_SHARED, this->fd, 0);
+    if (address == MAP_FAILED)
+    {
+        Close();
+        return false;
+    }
+    this->data = static_cast<const std::uint8_t *>(address);
+    return true;
+}
+
+void MappedFile::Close()
+{
+    if (this->data != nullptr)
+        munmap(const_cast<std::uint8_t *>(this->data), this->size);
+    if (this->fd >= 0)
+        close(this->fd);
+    this->data = nullptr;
+    this->fd = -1;
+    this->size = 0;
+}
+
+#endif
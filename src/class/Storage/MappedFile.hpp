@@ -0,0 +1,41 @@
+#ifndef __MAPPEDFILE__
+#define __MAPPEDFILE__
+
+#include <cstddef>
+#include <cstdint>
+#include <string>
+
+// Read-only memory mapping of a whole file (mmap on POSIX, CreateFileMapping
+// on Windows). The mapping lives until Close() or destruction. A file other
+// processes may have mapped is never rewritten in place: write it under
+// Private(path), then Replace it over path.
+class MappedFile
+{
+private:
+    const std::uint8_t *data = nullptr;
+    std::size_t size = 0;
+#ifdef _WIN32
+    void *file = nullptr;    // HANDLE
+    void *mapping = nullptr; // HANDLE
+#else
+    int fd = -1;
+#endif
+
+public:
+    MappedFile() = default;
+    MappedFile(const MappedFile &) = delete;
+    MappedFile &operator=(const MappedFile &) = delete;
+    ~MappedFile() { Close(); }
+
+    bool Open(const std::string &path); // false if the file is missing, empty or cannot be mapped
+    void Close();
+
+    bool IsOpen() const { return data != nullptr; }
+    const std::uint8_t *Data() const { return data; }
+    std::size_t Size() const { return size; }
+
+    static std::string Private(const std::string &path);             // path + "." + this process's id
+    static bool Replace(const std::string &from, const std::string &to); // rename, or remove from on failure
+};
+
+#endif
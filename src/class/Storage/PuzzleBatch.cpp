@@ -0,0 +1,170 @@
+#include "PuzzleBatch.hpp"
+#include "../Protocol/Protocol.hpp"
+
+#include <algorithm>
+#include <cstring>
+#include <filesystem>
+#include <fstream>
+#include <stdexcept>
+#include <system_error>
+
+namespace fs = std::filesystem;
+
+namespace
+{
+    const char MAGIC[8] = {'R', 'H', 'B', 'A', 'T', 'C', 'H', '1'};
+    const std::size_t HEADER = 16; // magic, count, 0
+}
+
+std::size_t PuzzleBatch::Offset(std::size_t index) const
+{
+    std::uint64_t offset;
+    std::memcpy(&offset, this->file.Data() + HEADER + index * 8, sizeof(offset));
+    return static_cast<std::size_t>(offset);
+}
+
+bool PuzzleBatch::Open(const std::string &path)
+{
+    this->count = 0;
+    if (!this->file.Open(path) || this->file.Size() < HEADER || std::memcmp(this->file.Data(), MAGIC, sizeof(MAGIC)) != 0)
+    {
+        this->file.Close();
+        return false;
+    }
+    std::uint32_t stored;
+    std::memcpy(&stored, this->file.Data() + 8, sizeof(stored));
+
+    // every record has to lie inside the file and describe a board Get can build
+    const std::uint8_t *data = this->file.Data();
+    std::size_t size = this->file.Size();
+    bool intact = HEADER + static_cast<std::size_t>(stored) * 8 <= size;
+    for (std::size_t i = 0; intact && i < stored; i++)
+    {
+        std::uint64_t offset;
+        std::memcpy(&offset, data + HEADER + i * 8, sizeof(offset));
+        intact = offset + 4 <= size;
+        if (!intact)
+            break;
+        const std::uint8_t *record = data + offset;
+        int N = record[0], M = record[1], pieces = record[2];
+        std::size_t end = offset + 4 + record[3] + pieces * std::size_t(4);
+        intact = N > 0 && M > 0 && N <= 64 && M <= 64 && end <= size;
+        for (int k = 0; intact && k < pieces; k++)
+        {
+            const std::uint8_t *piece = record + 4 + record[3] + k * 4;
+            int length = piece[1] & 0x7F, row = piece[2], col = piece[3];
+            bool vertical = piece[1] & 0x80;
+            intact = length >= 1 && row + (vertical ? length : 1) <= N && col + (vertical ? 1 : length) <= M;
+        }
+    }
+    if (!intact)
+    {
+        this->file.Close();
+        return false;
+    }
+    this->count = stored;
+    return true;
+}
+
+std::string PuzzleBatch::Name(std::size_t index) const
+{
+    const std::uint8_t *record = this->file.Data() + Offset(index);
+    return std::string(reinterpret_cast<const char *>(record + 4), record[3]);
+}
+
+Board PuzzleBatch::Get(std::size_t index) const
+{
+    const std::uint8_t *record = this->file.Data() + Offset(index);
+    std::vector<Piece> pieces;
+    const std::uint8_t *piece = record + 4 + record[3];
+    for (int k = 0; k < record[2]; k++, piece += 4)
+        pieces.emplace_back(static_cast<char>(piece[0]), piece[1] & 0x7F, (piece[1] & 0x80) != 0, std::make_pair<int, int>(piece[2], piece[3]));
+    return Board(record[0], record[1], pieces);
+}
+
+bool PuzzleBatch::Write(const std::string &path, const std::vector<std::pair<std::string, Board>> &puzzles)
+{
+    std::vector<char> records;
+    std::vector<std::uint64_t> offsets;
+    std::size_t start = HEADER + puzzles.size() * 8;
+    for (const auto &[name, board] : puzzles)
+    {
+        offsets.push_back(start + records.size());
+        std::size_t length = std::min<std::size_t>(name.size(), 255);
+        records.push_back(static_cast<char>(board.N));
+        records.push_back(static_cast<char>(board.M));
+        records.push_back(static_cast<char>(board.Pieces.size()));
+        records.push_back(static_cast<char>(length));
+        records.insert(records.end(), name.begin(), name.begin() + length);
+        for (const Piece &piece : board.Pieces)
+        {
+            records.push_back(piece.id);
+            records.push_back(static_cast<char>(piece.length | (piece.isVertical ? 0x80 : 0)));
+            records.push_back(static_cast<char>(piece.pos.first));
+            records.push_back(static_cast<char>(piece.pos.second));
+        }
+    }
+
+    std::ofstream out(path, std::ios::binary);
+    std::uint32_t fields[2] = {static_cast<std::uint32_t>(puzzles.size()), 0};
+    out.write(MAGIC, sizeof(MAGIC));
+    out.write(reinterpret_cast<const char *>(fields), sizeof(fields));
+    out.write(reinterpret_cast<const char *>(offsets.data()), offsets.size() * sizeof(std::uint64_t));
+    out.write(records.data(), records.size());
+    return static_cast<bool>(out);
+}
+
+std::size_t PuzzleBatch::Pack(const std::string &path, const std::vector<std::string> &roots, std::ostream &log)
+{
+    std::vector<std::pair<std::string, Board>> puzzles;
+    for (const std::string &root : roots)
+    {
+        std::error_code error;
+        std::vector<fs::path> folders;
+        if (fs::is_regular_file(fs::path(root) / "problem.txt", error))
+            folders.push_back(root);
+        for (auto entry = fs::recursive_directory_iterator(root, error); !error && entry != fs::recursive_directory_iterator(); entry.increment(error))
+        {
+            if (entry->is_directory(error) && fs::is_regular_file(entry->path() / "problem.txt", error))
+                folders.push_back(entry->path());
+        }
+        std::sort(folders.begin(), folders.end());
+
+        for (const fs::path &folder : folders)
+        {
+            std::ifstream file(folder / "problem.txt");
+            try
+            {
+                puzzles.emplace_back(folder.generic_string(), Protocol::ReadProblem(file));
+            }
+            catch (const std::exception &problem)
+            {
+                log << "[PACK] skipped " << folder.generic_string() << ": " << problem.what() << "\n";
+            }
+        }
+    }
+    if (!Write(path, puzzles))
+        throw std::invalid_argument("Cannot write " + path);
+    return puzzles.size();
+}
+
+Board PuzzleBatch::Load(const std::string &source)
+{
+    std::size_t at = source.rfind(".rhb@");
+    if (at == std::string::npos)
+    {
+        std::ifstream file(fs::path(source) / "problem.txt");
+        if (!file)
+            throw std::invalid_argument("Cannot open " + (fs::path(source) / "problem.txt").string());
+        return Protocol::ReadProblem(file);
+    }
+
+    PuzzleBatch batch;
+    std::string path = source.substr(0, at + 4);
+    if (!batch.Open(path))
+        throw std::invalid_argument("Cannot open batch file " + path);
+    std::size_t index = std::stoul(source.substr(at + 5));
+    if (index >= batch.Size())
+        throw std::invalid_argument(path + " holds " + std::to_string(batch.Size()) + " puzzles");
+    return batch.Get(index);
+}
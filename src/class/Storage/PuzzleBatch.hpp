@@ -0,0 +1,49 @@
+#ifndef __PUZZLEBATCH__
+#define __PUZZLEBATCH__
+
+#include "../Board/Board.hpp"
+#include "MappedFile.hpp"
+
+#include <cstddef>
+#include <cstdint>
+#include <ostream>
+#include <string>
+#include <utility>
+#include <vector>
+
+// Many puzzles in one memory-mapped .rhb file, already parsed and turned so the
+// exit is on the right (main.exe --pack writes one from problem folders). A
+// puzzle is read straight from the mapping, with no file to open or text to
+// parse. Layout, little-endian:
+//   0   "RHBATCH1"
+//   8   u32 count, u32 0
+//   16  u64 offset of each puzzle, count of them
+//   then per puzzle: u8 N, u8 M, u8 pieces, u8 name length, the name, and
+//   4 bytes per piece: id, length | 0x80 when vertical, row, column
+class PuzzleBatch
+{
+private:
+    MappedFile file;
+    std::size_t count = 0;
+
+    std::size_t Offset(std::size_t index) const;
+
+public:
+    PuzzleBatch() = default;
+
+    bool Open(const std::string &path); // false if missing or damaged
+    std::size_t Size() const { return count; }
+    std::string Name(std::size_t index) const;
+    Board Get(std::size_t index) const;
+
+    static bool Write(const std::string &path, const std::vector<std::pair<std::string, Board>> &puzzles);
+
+    // problem.txt of every folder under roots (sorted, nested folders included) into
+    // one batch; folders that do not parse are listed on log and left out
+    static std::size_t Pack(const std::string &path, const std::vector<std::string> &roots, std::ostream &log);
+
+    // a problem folder, or <file.rhb>@<index>; throws std::invalid_argument
+    static Board Load(const std::string &source);
+};
+
+#endif
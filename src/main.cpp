@@ -1,73 +1,503 @@
 #include "class/Board/Board.hpp"
+#include "class/Board/Cost.hpp"
 #include "class/Algo/Heuristics/Heuristics.hpp"
 #include "class/Algo/Solver/Solver.hpp"
+#include "class/Algo/Parallel/ParallelSolver.hpp"
+#include "class/Algo/StateSpace/StateSpace.hpp"
+#include "class/Algo/StateSpace/DistanceTable.hpp"
+#include "class/Protocol/Protocol.hpp"
+#include "class/Daemon/Daemon.hpp"
+#include "class/Bench/Bench.hpp"
+#include "class/Generator/Generator.hpp"
+#include "class/Storage/PuzzleBatch.hpp"
 
+#include <algorithm>
 #include <iostream>
 #include <fstream>
 #include <vector>
 #include <string>
 #include <limits>
+#include <optional>
 #include <chrono>
+#include <thread>
+#include <stdexcept>
 
 int main(int argc, char *argv[])
 {
     std::string filename;
     std::string algorithm;
     std::string heuristic;
+    bool stream = false;  // --stream : write the protocol to stdout instead of solutions.txt
+    bool compare = false; // --compare : also run the serial solver and report the speedup
+    int threads = std::max(1u, std::thread::hardware_concurrency()); // --threads N : for HDA* / HDUCS
+    int memory = 64;                                                 // --memory MB : IDA* transposition table, --enumerate frontier
+    bool checkAdmissible = false; // --check-admissible : compare the heuristic with exact distances, then exit
+    std::string cost = "MOVES";   // --cost MOVES|CELLS : what each slide costs
+    bool measure = false;         // --measure : print one RESULT line for --bench instead of writing solutions.txt
+    long long timeout = 0;        // --timeout MS : give up after MS milliseconds (0 = never)
+    long long nodes = 0;          // --nodes N : give up after N expansions (0 = never; not HDA* / HDUCS)
+
+    if (argc == 2 && std::string(argv[1]) == "--list-heuristics")
+    {
+        // one "NAME<TAB>description" line per heuristic, for the GUI's chooser
+        for (const Heuristics::Entry &entry : Heuristics::Registry())
+            std::cout << entry.name << '\t' << entry.description << '\n';
+        return 0;
+    }
+
+    if (argc >= 2 && std::string(argv[1]) == "--daemon")
+    {
+        // serve requests on stdin until it closes (see Daemon.hpp)
+        for (int next = 2; next + 1 < argc; next++)
+        {
+            std::string option = argv[next];
+            if (option == "--threads")
+                threads = std::stoi(argv[++next]);
+            else if (option == "--memory")
+                memory = std::stoi(argv[++next]);
+        }
+        Daemon(std::cin, std::cout, threads, memory).Run();
+        return 0;
+    }
+
+    if (argc >= 2 && std::string(argv[1]) == "--bench")
+    {
+        // main.exe --bench [folders...] [options]: see Bench.hpp
+        Bench::Options options;
+        options.self = argv[0];
+        for (int next = 2; next < argc; next++)
+        {
+            std::string option = argv[next];
+            bool value = next + 1 < argc;
+            if (option == "--warmup" && value)
+                options.warmup = std::stoi(argv[++next]);
+            else if (option == "--repeats" && value)
+                options.repeats = std::max(1, std::stoi(argv[++next]));
+            else if (option == "--timeout" && value)
+                options.timeout = std::stoll(argv[++next]);
+            else if (option == "--baseline" && value)
+                options.baseline = argv[++next];
+            else if (option == "--save" && value)
+                options.save = argv[++next];
+            else if (option == "--corpus" && value)
+                options.corpus = argv[++next];
+            else if (option == "--tolerance" && value)
+                options.tolerance = std::stod(argv[++next]);
+            else if (option == "--cost" && value)
+                options.cost = argv[++next];
+            else
+                options.roots.push_back(option);
+        }
+        if (options.roots.empty())
+            options.roots.push_back("test");
+        return Bench(options).Run(std::cout);
+    }
+
+    if (argc >= 3 && std::string(argv[1]) == "--generate")
+    {
+        // main.exe --generate <folder> [options]: see Generator.hpp
+        Generator::Options options;
+        options.folder = argv[2];
+        options.threads = threads;
+        try
+        {
+            for (int next = 3; next < argc; next++)
+            {
+                std::string option = argv[next];
+                bool value = next + 1 < argc;
+                if (option == "--size" && next + 2 < argc)
+                {
+                    options.N = std::stoi(argv[++next]);
+                    options.M = std::stoi(argv[++next]);
+                }
+                else if (option == "--exit" && value)
+                    options.exit = argv[++next][0];
+                else if (option == "--count" && value)
+                    options.count = std::max(1, std::stoi(argv[++next]));
+                else if (option == "--min-moves" && value)
+                    options.minMoves = std::stoi(argv[++next]);
+                else if (option == "--max-pieces" && value)
+                    options.maxPieces = std::stoi(argv[++next]);
+                else if (option == "--threads" && value)
+                    options.threads = std::stoi(argv[++next]);
+                else if (option == "--seconds" && value)
+                    options.seconds = std::stoll(argv[++next]);
+                else if (option == "--patience" && value)
+                    options.patience = std::stoi(argv[++next]);
+                else if (option == "--nodes" && value)
+                    options.nodes = std::stoll(argv[++next]);
+                else if (option == "--seed" && value)
+                    options.seed = std::stoull(argv[++next]);
+                else
+                    throw std::invalid_argument("Unknown option " + option);
+            }
+            return Generator(options).Run(std::cout);
+        }
+        catch (const std::invalid_argument &error)
+        {
+            std::cerr << error.what() << '\n';
+            return 1;
+        }
+    }
+
+    if (argc >= 4 && std::string(argv[1]) == "--pack")
+    {
+        // main.exe --pack <out.rhb> <folders...>: every problem under the folders into one batch file
+        try
+        {
+            std::size_t packed = PuzzleBatch::Pack(argv[2], std::vector<std::string>(argv + 3, argv + argc), std::cerr);
+            std::cout << "[PACK] " << packed << " puzzles into " << argv[2] << "\n";
+            return 0;
+        }
+        catch (const std::invalid_argument &error)
+        {
+            std::cerr << error.what() << '\n';
+            return 1;
+        }
+    }
+
+    if (argc >= 4 && std::string(argv[1]) == "--batch")
+    {
+        // main.exe --batch <file.rhb> <ALGO> [HEUR] [options]: every puzzle of a batch in this
+        // process, one name / status / ms / nodes / moves / cost line each
+        PuzzleBatch batch;
+        if (!batch.Open(argv[2]))
+        {
+            std::cerr << "Cannot open batch file " << argv[2] << "\n";
+            return 1;
+        }
+        algorithm = argv[3];
+        bool blind = algorithm == "UCS" || algorithm == "HDUCS" || algorithm == "BIDI";
+        int next = 4;
+        if (!blind && argc > 4 && std::string(argv[4]).rfind("--", 0) != 0)
+            heuristic = argv[next++];
+        for (; next < argc; next++)
+        {
+            std::string option = argv[next];
+            if (option == "--threads" && next + 1 < argc)
+                threads = std::stoi(argv[++next]);
+            else if (option == "--memory" && next + 1 < argc)
+                memory = std::stoi(argv[++next]);
+            else if (option == "--cost" && next + 1 < argc)
+                cost = argv[++next];
+            else if (option == "--timeout" && next + 1 < argc)
+                timeout = std::stoll(argv[++next]);
+            else if (option == "--nodes" && next + 1 < argc)
+                nodes = std::stoll(argv[++next]);
+        }
+
+        CostModel model;
+        std::optional<Heuristics> named;
+        try
+        {
+            model = ParseCostModel(cost);
+            named.emplace(blind ? "ZERO" : heuristic);
+        }
+        catch (const std::invalid_argument &error)
+        {
+            std::cerr << error.what() << '\n';
+            return 1;
+        }
+
+        std::size_t solved = 0;
+        auto batchStart = std::chrono::steady_clock::now();
+        for (std::size_t index = 0; index < batch.Size(); index++)
+        {
+            Board board = batch.Get(index);
+            Heuristics H = *named; // prepared for this board only
+            H.Prepare(board);
+            Solver solver(board, H);
+            solver.TT_BYTES = static_cast<std::size_t>(memory) << 20;
+            solver.COST = model;
+            solver.NODE_LIMIT = nodes;
+            ParallelSolver parallelSolver(board, H, threads);
+            parallelSolver.COST = model;
+            if (timeout > 0)
+            {
+                solver.OnProgress = [&](const SearchProgress &progress)
+                { return progress.elapsed < timeout; };
+                parallelSolver.OnProgress = solver.OnProgress;
+            }
+
+            bool parallel = algorithm == "HDA*" || algorithm == "HDUCS";
+            std::optional<std::vector<Move>> solution;
+            auto start = std::chrono::steady_clock::now();
+            if (parallel)
+                solution = parallelSolver.Solve();
+            else if (algorithm == "UCS" || algorithm == "A*")
+                solution = solver.SolveComplete();
+            else if (algorithm == "GBFS")
+                solution = solver.SolveGreedy();
+            else if (algorithm == "BIDI")
+                solution = solver.SolveBidirectional();
+            else if (algorithm == "ARA*")
+                solution = solver.SolveAnytime();
+            else
+                solution = solver.SolveLowMemory();
+            double ms = std::chrono::duration<double, std::milli>(std::chrono::steady_clock::now() - start).count();
+            if (solution)
+                solution = Compress(*solution);
+
+            bool stopped = (parallel ? parallelSolver.CANCELLED : solver.CANCELLED) && !solution; // ARA* keeps its best
+            solved += solution.has_value();
+            std::cout << batch.Name(index) << '\t' << (stopped ? "TIMEOUT" : solution ? "SOLVED" : "NOSOLUTION") << '\t'
+                      << ms << '\t' << (parallel ? parallelSolver.VISITED_NODES : solver.VISITED_NODES) << '\t'
+                      << (solution ? static_cast<int>(solution->size()) : -1) << '\t'
+                      << (solution ? PathCost(model, *solution) : -1) << '\n';
+        }
+        auto elapsed = std::chrono::duration_cast<std::chrono::milliseconds>(std::chrono::steady_clock::now() - batchStart);
+        std::cout << "[BATCH] " << solved << " of " << batch.Size() << " solved in " << elapsed.count() << " ms\n";
+        return solved == batch.Size() ? 0 : 1;
+    }
 
     if (argc >= 3)
     {
         filename = argv[1];
         algorithm = argv[2];
-        if (algorithm != "UCS")
-            heuristic = argv[3];
+        int next = 3;
+        if (algorithm != "UCS" && algorithm != "HDUCS" && algorithm != "BIDI" && algorithm != "--enumerate" && argc > 3 && std::string(argv[3]).rfind("--", 0) != 0)
+            heuristic = argv[next++];
+
+        for (; next < argc; next++)
+        {
+            std::string option = argv[next];
+            if (option == "--stream")
+                stream = true;
+            else if (option == "--compare")
+                compare = true;
+            else if (option == "--threads" && next + 1 < argc)
+                threads = std::stoi(argv[++next]);
+            else if (option == "--memory" && next + 1 < argc)
+                memory = std::stoi(argv[++next]);
+            else if (option == "--check-admissible")
+                checkAdmissible = true;
+            else if (option == "--cost" && next + 1 < argc)
+                cost = argv[++next];
+            else if (option == "--measure")
+                measure = true;
+            else if (option == "--timeout" && next + 1 < argc)
+                timeout = std::stoll(argv[++next]);
+            else if (option == "--nodes" && next + 1 < argc)
+                nodes = std::stoll(argv[++next]);
+        }
     }
     else
     {
         std::cout << "[INPUT] ENTER PATH TO PROBLEM FOLDER: ";
         std::cin >> filename;
-        std::cout << "[INPUT] ALGORITHM: (UCS / GBFS / A*/ IDA*)";
+        std::cout << "[INPUT] ALGORITHM: (UCS / GBFS / A*/ IDA* / HDUCS / HDA* / BIDI / ARA*)";
         std::cin >> algorithm;
-        if (algorithm != "UCS")
+        if (algorithm != "UCS" && algorithm != "HDUCS" && algorithm != "BIDI")
         {
-            std::cout << "[INPUT] SELECT HEURISTIC (DUMBASS / LAZY) : ";
+            std::cout << "[INPUT] SELECT HEURISTIC (";
+            for (const Heuristics::Entry &entry : Heuristics::Registry())
+                std::cout << entry.name << " / ";
+            std::cout << "MAX(a,b) / WEIGHTED(w,a)) : ";
             std::cin >> heuristic;
         }
     }
 
-    // read testcase
-    std::ifstream file(filename + "/problem.txt");
-    if (!file)
+    // read testcase: a problem folder, or <file.rhb>@<index> with nowhere to write results
+    if (filename.find(".rhb@") != std::string::npos && !stream && !measure)
     {
-        std::cerr << "Cannot open file.\n";
+        std::cerr << "A puzzle from a batch file needs --stream or --measure.\n";
         return 1;
     }
+    std::optional<Board> loaded;
+    try
+    {
+        loaded.emplace(PuzzleBatch::Load(filename));
+    }
+    catch (const std::exception &error)
+    {
+        std::cerr << error.what() << '\n';
+        return 1;
+    }
+    Board &board = *loaded;
+
+    if (algorithm == "--enumerate")
+    {
+        // every reachable state and its distance to the goal, into <folder>/states.bin
+        StateSpace space(board, threads, static_cast<std::size_t>(memory) << 20);
+        auto start = std::chrono::high_resolution_clock::now();
+        if (!space.Write(filename + "/states.bin"))
+        {
+            std::cerr << "Cannot write states.bin in folder.\n";
+            return 1;
+        }
+        auto duration = std::chrono::duration_cast<std::chrono::milliseconds>(std::chrono::high_resolution_clock::now() - start);
+        std::cout << "[ENUMERATE] " << space.STATES << " states, " << space.GOALS << " solved, farthest "
+                  << space.FARTHEST << " moves, start " << space.DEPTH << " moves, " << duration.count() << " ms\n";
+        return 0;
+    }
+
+    bool parallel = algorithm == "HDA*" || algorithm == "HDUCS";
+    std::optional<Heuristics> resolved;
+    CostModel model;
+    try
+    {
+        model = ParseCostModel(cost);
+        resolved.emplace((algorithm == "UCS" || algorithm == "HDUCS" || algorithm == "BIDI") ? "ZERO" : heuristic);
+    }
+    catch (const std::invalid_argument &error)
+    {
+        std::cerr << error.what() << '\n';
+        return 1;
+    }
+    Heuristics &H = *resolved;
+    H.Prepare(board);
+
+    if (checkAdmissible)
+    {
+        // every reachable state: the heuristic may never exceed the true distance
+        // (from --enumerate's states.bin, written first if it is missing or stale)
+        std::string path = filename + "/states.bin";
+        DistanceTable table;
+        if (!table.Open(path) || !table.Matches(board) || table.Lookup(board.Pack()) < 0)
+        {
+            StateSpace space(board, threads, static_cast<std::size_t>(memory) << 20);
+            if (!space.Write(path) || !table.Open(path))
+            {
+                std::cerr << "Cannot write states.bin in folder.\n";
+                return 1;
+            }
+        }
 
-    int N, M, P;
-    std::vector<std::string> INPUT;
+        std::size_t solvable = 0, over = 0;
+        int worst = 0;
+        double ratio = 0;
+        Board current = board;
+        for (std::size_t state = 0; state < table.Size(); state++)
+        {
+            int distance = table.Distance(state);
+            if (distance == DistanceTable::UNSOLVABLE)
+                continue;
+            current.Load(table.Key(state));
+            int h = H.calculate(current);
+            solvable++;
+            if (h > distance)
+            {
+                over++;
+                worst = std::max(worst, h - distance);
+            }
+            if (distance > 0)
+                ratio += static_cast<double>(h) / distance;
+        }
 
-    file >> N >> M;
-    file >> P;
-    file.ignore(std::numeric_limits<std::streamsize>::max(), '\n'); // newline
+        std::cout << "[ADMISSIBLE] " << H.Name() << ": " << table.Size() << " states, "
+                  << solvable << " solvable, mean h/d " << ratio / std::max<std::size_t>(1, solvable) << ", ";
+        if (over == 0)
+            std::cout << "never overestimates\n";
+        else
+            std::cout << over << " overestimate (by up to " << worst << ")\n";
+        return over == 0 ? 0 : 2;
+    }
 
-    std::string line;
-    while (std::getline(file, line))
-        INPUT.push_back(line);
-    Board board(INPUT, N, M);
-    Heuristics H((algorithm == "UCS") ? "UCS" : heuristic);
     Solver solver(board, H);
+    solver.TT_BYTES = static_cast<std::size_t>(memory) << 20;
+    solver.COST = model;
+    solver.NODE_LIMIT = nodes;
+    ParallelSolver parallelSolver(board, H, threads);
+    parallelSolver.COST = model;
 
-    std::vector<Board> solutions;
+    Protocol protocol(std::cout);
     auto start = std::chrono::high_resolution_clock::now();
-    if (algorithm == "UCS" || algorithm == "A*")
-        solutions = solver.SolveComplete();
+    if (stream)
+    {
+        solver.OnImproved = [&](const std::vector<Move> &moves, double bound)
+        {
+            std::vector<Move> compressed = Compress(moves);
+            auto elapsed = std::chrono::duration_cast<std::chrono::milliseconds>(std::chrono::high_resolution_clock::now() - start);
+            protocol.Improved(board, compressed, elapsed.count(), solver.VISITED_NODES, PathCost(model, compressed), bound);
+        };
+    }
+    if (stream || timeout > 0)
+    {
+        solver.OnProgress = [&](const SearchProgress &progress)
+        {
+            if (stream)
+                protocol.Progress(progress);
+            return timeout <= 0 || progress.elapsed < timeout;
+        };
+        parallelSolver.OnProgress = solver.OnProgress;
+    }
+
+    std::optional<std::vector<Move>> solution;
+    start = std::chrono::high_resolution_clock::now();
+    if (parallel)
+        solution = parallelSolver.Solve();
+    else if (algorithm == "UCS" || algorithm == "A*")
+        solution = solver.SolveComplete();
     else if (algorithm == "GBFS")
-        solutions = solver.SolveGreedy();
+        solution = solver.SolveGreedy();
+    else if (algorithm == "BIDI")
+        solution = solver.SolveBidirectional();
+    else if (algorithm == "ARA*")
+        solution = solver.SolveAnytime();
     else
-        solutions = solver.SolveLowMemory();
+        solution = solver.SolveLowMemory();
     auto end = std::chrono::high_resolution_clock::now();
+    if (solution)
+        solution = Compress(*solution); // one record per macro-move
 
     auto duration = std::chrono::duration_cast<std::chrono::milliseconds>(end - start);
+    int visited = parallel ? parallelSolver.VISITED_NODES : solver.VISITED_NODES;
+
+    if (measure)
+    {
+        Bench::Sample sample;
+        bool stopped = (parallel ? parallelSolver.CANCELLED : solver.CANCELLED) && !solution; // ARA* keeps its best
+        sample.status = stopped ? "TIMEOUT" : solution ? "SOLVED" : "NOSOLUTION";
+        sample.ms = std::chrono::duration<double, std::milli>(end - start).count();
+        sample.nodes = visited;
+        sample.peakOpen = parallel ? 0 : static_cast<long long>(solver.PEAK_OPEN);
+        sample.peakKB = Metrics::PeakMemoryKB();
+        if (solution)
+        {
+            sample.length = static_cast<int>(solution->size());
+            sample.cost = PathCost(model, *solution);
+        }
+        Bench::Report(std::cout, sample);
+        return 0;
+    }
+
+    if (parallel && compare)
+    {
+        Solver serial(board, H);
+        serial.COST = model;
+        auto serialStart = std::chrono::high_resolution_clock::now();
+        auto serialSolution = serial.SolveComplete();
+        auto serialEnd = std::chrono::high_resolution_clock::now();
+        auto serialDuration = std::chrono::duration_cast<std::chrono::microseconds>(serialEnd - serialStart);
+        auto parallelDuration = std::chrono::duration_cast<std::chrono::microseconds>(end - start);
+
+        std::cerr << "[COMPARE] " << threads << " threads: " << parallelDuration.count() / 1000.0 << " ms, "
+                  << visited << " nodes, " << (solution ? static_cast<int>(solution->size()) : -1) << " moves | serial: "
+                  << serialDuration.count() / 1000.0 << " ms, " << serial.VISITED_NODES << " nodes, "
+                  << (serialSolution ? static_cast<int>(serialSolution->size()) : -1) << " moves | speedup "
+                  << static_cast<double>(serialDuration.count()) / std::max<long long>(1, parallelDuration.count()) << "x\n";
+    }
+
+    if (stream)
+    {
+        if (Metrics::ENABLED)
+            protocol.Stats(parallel ? parallelSolver.METRICS : solver.METRICS, duration.count());
+        if (!solution)
+        {
+            protocol.NoSolution(duration.count(), visited);
+            return 0;
+        }
+        protocol.Solution(board, *solution);
+        protocol.Done(duration.count(), visited, solution->size() + 1, PathCost(model, *solution),
+                      algorithm == "ARA*" ? solver.BOUND : 0);
+        return 0;
+    }
+
+    if (!solution)
+    {
+        std::cerr << "No solution found.\n";
+        return 1;
+    }
 
     std::ofstream outfile(filename + "/solutions.txt");
     if (!outfile)
@@ -76,10 +506,5 @@ int main(int argc, char *argv[])
         return 1;
     }
 
-    outfile << duration.count() << "\n";
-    outfile << solver.VISITED_NODES << "\n";
-    outfile << solutions.size() << "\n";
-    outfile << solutions[0].N << " " << solutions[0].M << "\n"; // possibly rotated
-    for (Board b : solutions)
-        b.PrintBoard(outfile);
+    Protocol(outfile).SolutionFile(board, *solution, duration.count(), visited);
 }
\ No newline at end of file